@@ -0,0 +1,97 @@
+package de.helmholtz.marketplace.cerebrum.annotation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumEntityNotFoundException;
+import de.helmholtz.marketplace.cerebrum.service.MarketUserService;
+
+/**
+ * Resolves {@link CurrentUser} parameters to the user with the sub of the
+ * request's token, or to null when there is none. The user is looked up once
+ * per request. Across requests the uuid of the user with a sub is kept for
+ * {@code cerebrum.current-user.ttl}, and the user is read by it through the
+ * entity cache, which evicts a user when it is changed. A kept uuid whose user
+ * has been deleted or no longer has that sub is dropped and looked up again.
+ */
+@Component
+public class CerebrumCurrentUserResolver implements HandlerMethodArgumentResolver
+{
+    private static final String CURRENT_USER = CerebrumCurrentUserResolver.class.getName() + ".user";
+
+    private final MarketUserService marketUserService;
+    private final Cache<String, String> uuids;
+
+    public CerebrumCurrentUserResolver(MarketUserService marketUserService,
+                                       @Value("${cerebrum.current-user.ttl:60s}") Duration ttl,
+                                       @Value("${cerebrum.current-user.maximum-size:10000}") long maximumSize)
+    {
+        this.marketUserService = marketUserService;
+        this.uuids = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter)
+    {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && parameter.getParameterType().isAssignableFrom(MarketUser.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory)
+    {
+        @SuppressWarnings("unchecked")
+        Optional<MarketUser> resolved = (Optional<MarketUser>) webRequest.getAttribute(
+                CURRENT_USER, RequestAttributes.SCOPE_REQUEST);
+        if (resolved == null) {
+            resolved = Optional.ofNullable(currentUser());
+            webRequest.setAttribute(CURRENT_USER, resolved, RequestAttributes.SCOPE_REQUEST);
+        }
+        return resolved.orElse(null);
+    }
+
+    MarketUser currentUser()
+    {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof Jwt)) {
+            return null;
+        }
+        String sub = ((Jwt) authentication.getPrincipal()).getSubject();
+        String uuid = uuids.getIfPresent(sub);
+        if (uuid != null) {
+            try {
+                MarketUser user = marketUserService.getUser(uuid, null, null);
+                if (sub.equals(user.getSub())) {
+                    return user;
+                }
+            } catch (CerebrumEntityNotFoundException e) {
+                // deleted since, look the sub up again
+            }
+            uuids.invalidate(sub);
+        }
+        MarketUser user = marketUserService.getUserBySub(sub);
+        if (user != null) {
+            uuids.put(sub, user.getUuid());
+        }
+        return user;
+    }
+}
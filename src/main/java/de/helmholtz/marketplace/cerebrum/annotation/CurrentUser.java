@@ -1,7 +1,5 @@
 package de.helmholtz.marketplace.cerebrum.annotation;
 
-import org.springframework.security.core.annotation.AuthenticationPrincipal;
-
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
@@ -9,10 +7,10 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * https://stackoverflow.com/questions/60727265/use-authenticationprincipal-with-jwtauthenticationtoken-to-use-own-user-class
+ * Marks a controller parameter to receive the {@code MarketUser} of the
+ * authenticated token, as resolved by {@link CerebrumCurrentUserResolver}.
  */
 @Target({ElementType.PARAMETER, ElementType.TYPE})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
-@AuthenticationPrincipal(expression = "@marketuserRepository.findBySub(#this)")
 public @interface CurrentUser {}
\ No newline at end of file
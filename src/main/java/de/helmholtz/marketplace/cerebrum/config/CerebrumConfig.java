@@ -2,28 +2,64 @@ package de.helmholtz.marketplace.cerebrum.config;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ClientHttpConnector;
 import org.springframework.http.client.reactive.JettyClientHttpConnector;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.security.oauth2.server.resource.web.reactive.function.client.ServletBearerExchangeFilterFunction;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.List;
+
+import de.helmholtz.marketplace.cerebrum.annotation.CerebrumCurrentUserResolver;
+import de.helmholtz.marketplace.cerebrum.entity.CerebrumFieldFilter;
 
 @EnableWebMvc
 @Configuration
-public class CerebrumConfig
+public class CerebrumConfig implements WebMvcConfigurer
 {
-    private final SslContextFactory.Client ssl = new SslContextFactory.Client();
-    private final HttpClient httpClient = new HttpClient(ssl);
-    ClientHttpConnector clientConnector = new JettyClientHttpConnector(httpClient);
+    private final CerebrumCurrentUserResolver currentUserResolver;
+
+    public CerebrumConfig(CerebrumCurrentUserResolver currentUserResolver)
+    {
+        this.currentUserResolver = currentUserResolver;
+    }
 
+    /* read-timeout bounds the time between two reads of a response, see CerebrumUserInfoClient for the whole response */
     @Bean
-    public WebClient authorisationServer()
+    public WebClient authorisationServer(@Value("${cerebrum.aai.connect-timeout:2s}") Duration connectTimeout,
+                                         @Value("${cerebrum.aai.read-timeout:5s}") Duration readTimeout)
     {
+        HttpClient httpClient = new HttpClient(new SslContextFactory.Client());
+        httpClient.setConnectTimeout(connectTimeout.toMillis());
+        httpClient.setIdleTimeout(readTimeout.toMillis());
+        ClientHttpConnector clientConnector = new JettyClientHttpConnector(httpClient);
         return WebClient.builder()
                 .filter(new ServletBearerExchangeFilterFunction())
                 .clientConnector(clientConnector)
                 .build();
     }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers)
+    {
+        resolvers.add(currentUserResolver);
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters)
+    {
+        for (HttpMessageConverter<?> converter : converters) {
+            if (converter instanceof MappingJackson2HttpMessageConverter) {
+                CerebrumFieldFilter.register(((MappingJackson2HttpMessageConverter) converter).getObjectMapper());
+            }
+        }
+    }
 }
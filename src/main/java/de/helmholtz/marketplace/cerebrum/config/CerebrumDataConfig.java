@@ -1,9 +1,33 @@
 package de.helmholtz.marketplace.cerebrum.config;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumDbRefResolver;
 
 @Configuration(proxyBeanMethods = false)
 @EnableMongoAuditing
 public class CerebrumDataConfig
-{}
+{
+    @Bean
+    public CerebrumDbRefResolver cerebrumDbRefResolver(MongoDatabaseFactory mongoDatabaseFactory)
+    {
+        return new CerebrumDbRefResolver(mongoDatabaseFactory);
+    }
+
+    /* replaces the converter of MongoDataConfiguration to resolve references with CerebrumDbRefResolver */
+    @Bean
+    public MappingMongoConverter mappingMongoConverter(CerebrumDbRefResolver dbRefResolver,
+                                                       MongoMappingContext mappingContext,
+                                                       MongoCustomConversions conversions)
+    {
+        MappingMongoConverter converter = new MappingMongoConverter(dbRefResolver, mappingContext);
+        converter.setCustomConversions(conversions);
+        return converter;
+    }
+}
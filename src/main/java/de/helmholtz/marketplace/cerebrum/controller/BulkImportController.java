@@ -0,0 +1,97 @@
+package de.helmholtz.marketplace.cerebrum.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumBulkItemResult;
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.service.BulkImportService;
+
+@RestController
+@RequestMapping(path = "${spring.data.rest.base-path}", produces = MediaType.APPLICATION_JSON_VALUE)
+@Tag(name = "bulk", description = "Bulk import of services, organizations and users")
+public class BulkImportController
+{
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final BulkImportService bulkImportService;
+
+    public BulkImportController(BulkImportService bulkImportService)
+    {
+        this.bulkImportService = bulkImportService;
+    }
+
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "create or replace services in bulk",
+            description = "The body is either a JSON array or newline delimited JSON. " +
+                    "Every item is validated and upserted by its uuid; items " +
+                    "without uuid are created.",
+            security = @SecurityRequirement(name = "hdf-aai"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "successful operation, see the status of each item",
+                    content = @Content(array = @ArraySchema(
+                            schema = @Schema(implementation = CerebrumBulkItemResult.class)))),
+            @ApiResponse(responseCode = "401", description = "unauthorised", content = @Content()),
+            @ApiResponse(responseCode = "403", description = "forbidden", content = @Content())
+    })
+    @PostMapping(path = "/services:bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public List<CerebrumBulkItemResult> bulkServices(InputStream body) throws IOException
+    {
+        return bulkImportService.importEntities(body, MarketService.class);
+    }
+
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "create or replace organizations in bulk",
+            description = "The body is either a JSON array or newline delimited JSON. " +
+                    "Every item is validated and upserted by its uuid; items " +
+                    "without uuid are created.",
+            security = @SecurityRequirement(name = "hdf-aai"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "successful operation, see the status of each item",
+                    content = @Content(array = @ArraySchema(
+                            schema = @Schema(implementation = CerebrumBulkItemResult.class)))),
+            @ApiResponse(responseCode = "401", description = "unauthorised", content = @Content()),
+            @ApiResponse(responseCode = "403", description = "forbidden", content = @Content())
+    })
+    @PostMapping(path = "/organizations:bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public List<CerebrumBulkItemResult> bulkOrganizations(InputStream body) throws IOException
+    {
+        return bulkImportService.importEntities(body, Organization.class);
+    }
+
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "create or replace users in bulk",
+            description = "The body is either a JSON array or newline delimited JSON. " +
+                    "Every item is validated and upserted by its uuid; items " +
+                    "without uuid are created.",
+            security = @SecurityRequirement(name = "hdf-aai"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "successful operation, see the status of each item",
+                    content = @Content(array = @ArraySchema(
+                            schema = @Schema(implementation = CerebrumBulkItemResult.class)))),
+            @ApiResponse(responseCode = "401", description = "unauthorised", content = @Content()),
+            @ApiResponse(responseCode = "403", description = "forbidden", content = @Content())
+    })
+    @PostMapping(path = "/users:bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public List<CerebrumBulkItemResult> bulkUsers(InputStream body) throws IOException
+    {
+        return bulkImportService.importEntities(body, MarketUser.class);
+    }
+}
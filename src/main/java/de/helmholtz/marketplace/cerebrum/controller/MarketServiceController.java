@@ -31,10 +31,17 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 import java.util.List;
 
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperation;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperationResult;
 import de.helmholtz.marketplace.cerebrum.entity.MarketService;
 import de.helmholtz.marketplace.cerebrum.errorhandling.CerebrumApiError;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
 import de.helmholtz.marketplace.cerebrum.service.MarketServiceService;
 import de.helmholtz.marketplace.cerebrum.utils.CerebrumControllerUtilities;
 
@@ -67,10 +74,58 @@ public class MarketServiceController
                     "or descending (desc) according to one or more of the service " +
                     "properties. Eg. to sort the list in ascending order base on the " +
                     "name property; the value will be set to name.asc")
-            @RequestParam(value = "sort", defaultValue = "name.asc") List<String> sorts)
+            @RequestParam(value = "sort", defaultValue = "name.asc") List<String> sorts,
+            @Parameter(description = "either offset, to fetch the page by its number along with " +
+                    "the total count, or cursor, to fetch the page following the after cursor " +
+                    "without counting. Cursor paging only sorts by top-level properties")
+            @RequestParam(value = "paging", defaultValue = "offset") @Pattern(regexp = "offset|cursor") String paging,
+            @Parameter(description = "cursor returned with the previous page; implies cursor paging")
+            @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "how the total of an offset page is obtained: exact, none " +
+                    "(no total, only whether a next page exists), estimated (from the collection " +
+                    "metadata when unfiltered) or cached (a recent count, refreshed in the background)")
+            @RequestParam(value = "count", defaultValue = "${cerebrum.paging.count:exact}")
+            @Pattern(regexp = "exact|none|estimated|cached") String count,
+            @Parameter(description = "properties to return, e.g. name,summary,tags; the uuid is " +
+                    "always returned. Only these properties are read from the database")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @Parameter(description = "references to return in full, e.g. serviceProviders,managementTeam; " +
+                    "the others are returned as uuid links")
+            @RequestParam(value = "expand", required = false) List<String> expand)
     {
+        Sort sort = Sort.by(CerebrumControllerUtilities.getOrders(sorts));
+        if (CerebrumControllerUtilities.isCursorPaging(paging, after)) {
+            return CerebrumControllerUtilities.withNextLink(
+                    marketServiceService.getServices(sort, size, after, fields, expand));
+        }
         return marketServiceService.getServices(
-                PageRequest.of(page, size, Sort.by(CerebrumControllerUtilities.getOrders(sorts))));
+                PageRequest.of(page, size, sort), CerebrumCountMode.of(count), fields, expand);
+    }
+
+    /* search Services */
+    @Operation(summary = "search the services by text",
+            description = "Matches the words of q against the name, tags, target groups, summary and " +
+                    "description of the services and returns the matches most relevant first, a page at a time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "successful operation",
+                    content = @Content(schema = @Schema(implementation = CerebrumKeysetSlice.class))),
+            @ApiResponse(responseCode = "400", description = "invalid request")
+    })
+    @GetMapping(path = "/search")
+    public CerebrumKeysetSlice<MarketService> searchMarketServices(
+            @Parameter(description = "words to search for; \"quoted phrases\" have to match " +
+                    "as a whole and -words must not match")
+            @RequestParam(value = "q") @NotBlank @Size(max = 200) String text,
+            @Parameter(description = "limit the number of records returned in one page")
+            @RequestParam(value = "size", defaultValue = "20") @Min(1) Integer size,
+            @Parameter(description = "cursor returned with the previous page")
+            @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "properties to return; by default the name, summary and " +
+                    "tags. The uuid is always returned")
+            @RequestParam(value = "fields", required = false) List<String> fields)
+    {
+        return CerebrumControllerUtilities.withNextLink(
+                marketServiceService.searchServices(text, size, after, fields));
     }
 
     /* get single Service */
@@ -86,9 +141,13 @@ public class MarketServiceController
     @GetMapping(path = "/{uuid}")
     public MarketService getMarketService(
             @Parameter(description = "UUID of the service that needs to be fetched")
-            @PathVariable() String uuid)
+            @PathVariable() String uuid,
+            @Parameter(description = "properties to return; the uuid is always returned")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @Parameter(description = "references to return in full; the others are returned as uuid links")
+            @RequestParam(value = "expand", required = false) List<String> expand)
     {
-        return marketServiceService.getService(uuid);
+        return marketServiceService.getService(uuid, fields, expand);
     }
 
     /* create Service */
@@ -201,6 +260,30 @@ public class MarketServiceController
         return marketServiceService.deleteProvider(uuid, provider.get("uuid").asText());
     }
 
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "add or remove several service providers in one request",
+            description = "Applies the operations in order and writes all changes " +
+                    "at once. The response lists the outcome of every operation.",
+            security = @SecurityRequirement(name = "hdf-aai"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "successful operation",
+                    content = @Content(array = @ArraySchema(
+                            schema = @Schema(implementation = CerebrumReferenceOperationResult.class)))),
+            @ApiResponse(responseCode = "400", description = "invalid id or request body"),
+            @ApiResponse(responseCode = "401", description = "unauthorised", content = @Content()),
+            @ApiResponse(responseCode = "403", description = "forbidden", content = @Content()),
+            @ApiResponse(responseCode = "404", description = "service not found",
+                    content = @Content(schema = @Schema(implementation = CerebrumApiError.class)))
+    })
+    @PostMapping(path = "/{uuid}/provider/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CerebrumReferenceOperationResult>> updateProviders(
+            @PathVariable("uuid") String uuid,
+            @RequestBody List<@Valid CerebrumReferenceOperation> operations)
+    {
+        return marketServiceService.updateProviders(uuid, operations);
+    }
+
     //Management team
     @PreAuthorize("isAuthenticated()")
     @Operation(security = @SecurityRequirement(name = "hdf-aai"))
@@ -220,4 +303,28 @@ public class MarketServiceController
     {
         return marketServiceService.deleteTeamMember(uuid, teamMember.get("uuid").asText());
     }
+
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "add or remove several management team members in one request",
+            description = "Applies the operations in order and writes all changes " +
+                    "at once. The response lists the outcome of every operation.",
+            security = @SecurityRequirement(name = "hdf-aai"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "successful operation",
+                    content = @Content(array = @ArraySchema(
+                            schema = @Schema(implementation = CerebrumReferenceOperationResult.class)))),
+            @ApiResponse(responseCode = "400", description = "invalid id or request body"),
+            @ApiResponse(responseCode = "401", description = "unauthorised", content = @Content()),
+            @ApiResponse(responseCode = "403", description = "forbidden", content = @Content()),
+            @ApiResponse(responseCode = "404", description = "service not found",
+                    content = @Content(schema = @Schema(implementation = CerebrumApiError.class)))
+    })
+    @PostMapping(path = "/{uuid}/management/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CerebrumReferenceOperationResult>> updateTeamMembers(
+            @PathVariable("uuid") String uuid,
+            @RequestBody List<@Valid CerebrumReferenceOperation> operations)
+    {
+        return marketServiceService.updateTeamMembers(uuid, operations);
+    }
 }
@@ -16,6 +16,8 @@ import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,19 +29,22 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import java.util.List;
 
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperation;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperationResult;
 import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
-import de.helmholtz.marketplace.cerebrum.entity.Person;
 import de.helmholtz.marketplace.cerebrum.errorhandling.CerebrumApiError;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
 import de.helmholtz.marketplace.cerebrum.service.MarketUserService;
-import de.helmholtz.marketplace.cerebrum.service.PersonService;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumUserInfoClient;
 import de.helmholtz.marketplace.cerebrum.utils.CerebrumControllerUtilities;
 
 @RestController
@@ -48,17 +53,14 @@ import de.helmholtz.marketplace.cerebrum.utils.CerebrumControllerUtilities;
         path = "${spring.data.rest.base-path}/users")
 @Tag(name = "users", description = "The User API")
 public class MarketUserController {
-    private final WebClient authorisationServer;
+    private final CerebrumUserInfoClient userInfoClient;
     private final MarketUserService marketUserService;
-    private final PersonService personService;
 
-    public MarketUserController(WebClient authorisationServer,
-                                MarketUserService marketUserService,
-                                PersonService personService)
+    public MarketUserController(CerebrumUserInfoClient userInfoClient,
+                                MarketUserService marketUserService)
     {
-        this.authorisationServer = authorisationServer;
+        this.userInfoClient = userInfoClient;
         this.marketUserService = marketUserService;
-        this.personService = personService;
     }
 
     @PreAuthorize("isAuthenticated()")
@@ -66,8 +68,9 @@ public class MarketUserController {
     @Operation(
             summary = "display user information",
             description = "This display an authenticated End-User user details " +
-                    "in JSON format. The result shown is by querying the UserInfo " +
-                    "endpoint of HDF AAI.",
+                    "in JSON format. The details are taken from the claims of the " +
+                    "token, or, if it lacks any of them, by querying the UserInfo " +
+                    "endpoint of HDF AAI, once per token.",
             security = @SecurityRequirement(name = "hdf-aai"),
             responses = {
                     @ApiResponse(responseCode = "200", description = "Success",
@@ -82,15 +85,9 @@ public class MarketUserController {
                                     implementation = CerebrumApiError.class)))
             }
     )
-    public MarketUser whoami()
+    public Mono<MarketUser> whoami(@Parameter(hidden = true) @AuthenticationPrincipal Jwt principal)
     {
-        JsonNode json = this.authorisationServer
-                .get()
-                .uri("https://login.helmholtz.de/oauth2/userinfo")
-                .retrieve()
-                .bodyToMono(JsonNode.class)
-                .block();
-        return checkAndAdd(json);
+        return userInfoClient.getIdentity(principal).map(CerebrumControllerUtilities.withinRequest(this::checkAndAdd));
     }
 
     /* get users */
@@ -112,10 +109,32 @@ public class MarketUserController {
                     "or descending (desc) according to one or more of the user " +
                     "properties. Eg. to sort the list in ascending order base on the " +
                     "firstName property; the value will be set to firstName.asc")
-            @RequestParam(value = "sort", defaultValue = "firstName.asc") List<String> sorts)
+            @RequestParam(value = "sort", defaultValue = "firstName.asc") List<String> sorts,
+            @Parameter(description = "either offset, to fetch the page by its number along with " +
+                    "the total count, or cursor, to fetch the page following the after cursor " +
+                    "without counting. Cursor paging only sorts by top-level properties")
+            @RequestParam(value = "paging", defaultValue = "offset") @Pattern(regexp = "offset|cursor") String paging,
+            @Parameter(description = "cursor returned with the previous page; implies cursor paging")
+            @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "how the total of an offset page is obtained: exact, none " +
+                    "(no total, only whether a next page exists), estimated (from the collection " +
+                    "metadata when unfiltered) or cached (a recent count, refreshed in the background)")
+            @RequestParam(value = "count", defaultValue = "${cerebrum.paging.count:exact}")
+            @Pattern(regexp = "exact|none|estimated|cached") String count,
+            @Parameter(description = "properties to return, e.g. screenName,profile; the uuid is " +
+                    "always returned. Only these properties are read from the database")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @Parameter(description = "references to return in full, e.g. affiliations,profile; " +
+                    "the others are returned as uuid links")
+            @RequestParam(value = "expand", required = false) List<String> expand)
     {
+        Sort sort = Sort.by(CerebrumControllerUtilities.getOrders(sorts));
+        if (CerebrumControllerUtilities.isCursorPaging(paging, after)) {
+            return CerebrumControllerUtilities.withNextLink(
+                    marketUserService.getUsers(sort, size, after, fields, expand));
+        }
         return marketUserService.getUsers(
-                PageRequest.of(page, size, Sort.by(CerebrumControllerUtilities.getOrders(sorts))));
+                PageRequest.of(page, size, sort), CerebrumCountMode.of(count), fields, expand);
     }
 
     /* get user */
@@ -132,9 +151,13 @@ public class MarketUserController {
     @GetMapping(path = "/{uuid}")
     public MarketUser getMarketUser(
             @Parameter(description = "UUID of the user that needs to be fetched")
-            @PathVariable() String uuid)
+            @PathVariable() String uuid,
+            @Parameter(description = "properties to return; the uuid is always returned")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @Parameter(description = "references to return in full; the others are returned as uuid links")
+            @RequestParam(value = "expand", required = false) List<String> expand)
     {
-        return marketUserService.getUser(uuid);
+        return marketUserService.getUser(uuid, fields, expand);
     }
 
     /* create user */
@@ -256,25 +279,33 @@ public class MarketUserController {
         return marketUserService.deleteAffiliation(uuid, affiliation.get("uuid").asText());
     }
 
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "add or remove several affiliations in one request",
+            description = "Applies the operations in order and writes all changes " +
+                    "at once. The response lists the outcome of every operation.",
+            security = @SecurityRequirement(name = "hdf-aai"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "successful operation",
+                    content = @Content(array = @ArraySchema(
+                            schema = @Schema(implementation = CerebrumReferenceOperationResult.class)))),
+            @ApiResponse(responseCode = "400", description = "invalid id or request body"),
+            @ApiResponse(responseCode = "401", description = "unauthorised", content = @Content()),
+            @ApiResponse(responseCode = "403", description = "forbidden", content = @Content()),
+            @ApiResponse(responseCode = "404", description = "user not found",
+                    content = @Content(schema = @Schema(implementation = CerebrumApiError.class)))
+    })
+    @PostMapping(path = "/{uuid}/affiliation/batch",
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<CerebrumReferenceOperationResult>> updateAffiliations(
+            @PathVariable("uuid") String uuid,
+            @RequestBody List<@Valid CerebrumReferenceOperation> operations)
+    {
+        return marketUserService.updateAffiliations(uuid, operations);
+    }
+
     private MarketUser checkAndAdd(@NotNull JsonNode user)
     {
-        MarketUser knownUser = marketUserService.getUser(user);
-        if (knownUser == null) {
-            MarketUser newUser = new MarketUser();
-            Person p = personService.getPerson(user.get("given_name").asText(), user.get("family_name").asText());
-            if (p == null) {
-                Person newPerson = new Person();
-                newPerson.setFirstName(user.get("given_name").asText());
-                newPerson.setLastName(user.get("family_name").asText());
-                newPerson.addEmail(user.get("email").asText());
-                Person details = personService.createPerson(newPerson);
-                newUser.setProfile(details);
-            } else {
-                newUser.setProfile(p);
-            }
-            newUser.setSub(user.get("sub").asText());
-            return marketUserService.createUser(newUser);
-        }
-        return knownUser;
+        return marketUserService.provisionUser(user.get("sub").asText(), user.get("given_name").asText(),
+                user.get("family_name").asText(), user.hasNonNull("email") ? user.get("email").asText() : null);
     }
 }
@@ -30,12 +30,14 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
 import java.util.List;
 
 import de.helmholtz.marketplace.cerebrum.entity.MarketService;
 import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
 import de.helmholtz.marketplace.cerebrum.entity.Organization;
 import de.helmholtz.marketplace.cerebrum.errorhandling.CerebrumApiError;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
 import de.helmholtz.marketplace.cerebrum.service.OrganizationService;
 import de.helmholtz.marketplace.cerebrum.utils.CerebrumControllerUtilities;
 
@@ -73,10 +75,29 @@ public class OrganizationController {
                     "or descending (desc) according to one or more of the organisation " +
                     "properties. Eg. to sort the list in ascending order base on the " +
                     "name property; the value will be set to name.asc")
-            @RequestParam(value = "sort", defaultValue = "name.asc") List<String> sorts)
+            @RequestParam(value = "sort", defaultValue = "name.asc") List<String> sorts,
+            @Parameter(description = "either offset, to fetch the page by its number along with " +
+                    "the total count, or cursor, to fetch the page following the after cursor " +
+                    "without counting. Cursor paging only sorts by top-level properties")
+            @RequestParam(value = "paging", defaultValue = "offset") @Pattern(regexp = "offset|cursor") String paging,
+            @Parameter(description = "cursor returned with the previous page; implies cursor paging")
+            @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "how the total of an offset page is obtained: exact, none " +
+                    "(no total, only whether a next page exists), estimated (from the collection " +
+                    "metadata when unfiltered) or cached (a recent count, refreshed in the background)")
+            @RequestParam(value = "count", defaultValue = "${cerebrum.paging.count:exact}")
+            @Pattern(regexp = "exact|none|estimated|cached") String count,
+            @Parameter(description = "properties to return, e.g. name,abbreviation; the uuid is " +
+                    "always returned. Only these properties are read from the database")
+            @RequestParam(value = "fields", required = false) List<String> fields)
     {
+        Sort sort = Sort.by(CerebrumControllerUtilities.getOrders(sorts));
+        if (CerebrumControllerUtilities.isCursorPaging(paging, after)) {
+            return CerebrumControllerUtilities.withNextLink(
+                    organizationService.getOrganizations(sort, size, after, fields));
+        }
         return organizationService.getOrganizations(
-                PageRequest.of(page, size, Sort.by(CerebrumControllerUtilities.getOrders(sorts))));
+                PageRequest.of(page, size, sort), CerebrumCountMode.of(count), fields);
     }
 
     /* get Organization */
@@ -95,9 +116,11 @@ public class OrganizationController {
     @GetMapping(path = "/{uuid}")
     public Organization getOrganization(
             @Parameter(description = "ID of the organization that needs to be fetched")
-            @PathVariable(name = "uuid") String uuid)
+            @PathVariable(name = "uuid") String uuid,
+            @Parameter(description = "properties to return; the uuid is always returned")
+            @RequestParam(value = "fields", required = false) List<String> fields)
     {
-        return organizationService.getOrganization(uuid);
+        return organizationService.getOrganization(uuid, fields);
     }
 
     /* create Organization */
@@ -215,10 +238,32 @@ public class OrganizationController {
                     "or descending (desc) according to one or more of the service " +
                     "properties. Eg. to sort the list in ascending order base on the " +
                     "name property; the value will be set to name.asc")
-            @RequestParam(value = "sort", defaultValue = "name.asc") List<String> sorts)
+            @RequestParam(value = "sort", defaultValue = "name.asc") List<String> sorts,
+            @Parameter(description = "either offset, to fetch the page by its number along with " +
+                    "the total count, or cursor, to fetch the page following the after cursor " +
+                    "without counting. Cursor paging only sorts by top-level properties")
+            @RequestParam(value = "paging", defaultValue = "offset") @Pattern(regexp = "offset|cursor") String paging,
+            @Parameter(description = "cursor returned with the previous page; implies cursor paging")
+            @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "how the total of an offset page is obtained: exact, none " +
+                    "(no total, only whether a next page exists), estimated (from the collection " +
+                    "metadata when unfiltered) or cached (a recent count, refreshed in the background)")
+            @RequestParam(value = "count", defaultValue = "${cerebrum.paging.count:exact}")
+            @Pattern(regexp = "exact|none|estimated|cached") String count,
+            @Parameter(description = "properties to return, e.g. name,summary,tags; the uuid is " +
+                    "always returned. Only these properties are read from the database")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @Parameter(description = "references to return in full, e.g. managementTeam; " +
+                    "the others are returned as uuid links")
+            @RequestParam(value = "expand", required = false) List<String> expand)
     {
+        Sort sort = Sort.by(CerebrumControllerUtilities.getOrders(sorts));
+        if (CerebrumControllerUtilities.isCursorPaging(paging, after)) {
+            return CerebrumControllerUtilities.withNextLink(
+                    organizationService.getHostedServices(uuid, sort, size, after, fields, expand));
+        }
         return organizationService.getHostedServices(
-                uuid, PageRequest.of(page, size, Sort.by(CerebrumControllerUtilities.getOrders(sorts))));
+                uuid, PageRequest.of(page, size, sort), CerebrumCountMode.of(count), fields, expand);
     }
 
     /* get list of members */
@@ -242,10 +287,36 @@ public class OrganizationController {
             @Parameter(description = "sort the fetched data in either ascending (asc) " +
                     "or descending (desc) according to one or more of the user " +
                     "properties. Eg. to sort the list in ascending order base on the " +
-                    "profile property; the value will be set to profile.firstName.asc")
-            @RequestParam(value = "sort", defaultValue = "profile.firstName.asc") List<String> sorts)
+                    "profile property; the value will be set to profile.firstName.asc. Defaults to " +
+                    "profile.firstName.asc, or to screenName.asc in cursor mode")
+            @RequestParam(value = "sort", required = false) List<String> sorts,
+            @Parameter(description = "either offset, to fetch the page by its number along with " +
+                    "the total count, or cursor, to fetch the page following the after cursor " +
+                    "without counting. Cursor paging only sorts by top-level properties")
+            @RequestParam(value = "paging", defaultValue = "offset") @Pattern(regexp = "offset|cursor") String paging,
+            @Parameter(description = "cursor returned with the previous page; implies cursor paging")
+            @RequestParam(value = "after", required = false) String after,
+            @Parameter(description = "how the total of an offset page is obtained: exact, none " +
+                    "(no total, only whether a next page exists), estimated (from the collection " +
+                    "metadata when unfiltered) or cached (a recent count, refreshed in the background)")
+            @RequestParam(value = "count", defaultValue = "${cerebrum.paging.count:exact}")
+            @Pattern(regexp = "exact|none|estimated|cached") String count,
+            @Parameter(description = "properties to return, e.g. screenName,profile; the uuid is " +
+                    "always returned. Only these properties are read from the database")
+            @RequestParam(value = "fields", required = false) List<String> fields,
+            @Parameter(description = "references to return in full, e.g. profile; " +
+                    "the others are returned as uuid links")
+            @RequestParam(value = "expand", required = false) List<String> expand)
     {
-        return organizationService.listKnownMembers(uuid,
-                PageRequest.of(page, size, Sort.by(CerebrumControllerUtilities.getOrders(sorts))));
+        boolean cursorPaging = CerebrumControllerUtilities.isCursorPaging(paging, after);
+        /* cursor paging cannot sort by the profile, a reference */
+        Sort sort = Sort.by(CerebrumControllerUtilities.getOrders(sorts != null ? sorts
+                : List.of(cursorPaging ? "screenName.asc" : "profile.firstName.asc")));
+        if (cursorPaging) {
+            return CerebrumControllerUtilities.withNextLink(
+                    organizationService.listKnownMembers(uuid, sort, size, after, fields, expand));
+        }
+        return organizationService.listKnownMembers(
+                uuid, PageRequest.of(page, size, sort), CerebrumCountMode.of(count), fields, expand);
     }
 }
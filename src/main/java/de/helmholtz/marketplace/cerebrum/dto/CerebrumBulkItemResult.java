@@ -0,0 +1,41 @@
+package de.helmholtz.marketplace.cerebrum.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.List;
+
+@Schema(name = "BulkItemResult", description = "the outcome of one item of a bulk request")
+@Getter(AccessLevel.PUBLIC)
+public class CerebrumBulkItemResult
+{
+    public enum Status
+    {
+        CREATED,
+        UPDATED,
+        INVALID,
+        FAILED
+    }
+
+    @Schema(description = "position of the item in the request body, starting at 0", example = "0")
+    private final int index;
+
+    @Schema(description = "Unique identifier of the item, if it could be read",
+            example = "svc-01eac6d7-0d35-1812-a3ed-24aec4231940")
+    private final String uuid;
+
+    @Schema(description = "outcome of the item", example = "CREATED")
+    private final Status status;
+
+    @Schema(description = "validation or write errors of the item")
+    private final List<String> errors;
+
+    public CerebrumBulkItemResult(int index, String uuid, Status status, List<String> errors)
+    {
+        this.index = index;
+        this.uuid = uuid;
+        this.status = status;
+        this.errors = errors;
+    }
+}
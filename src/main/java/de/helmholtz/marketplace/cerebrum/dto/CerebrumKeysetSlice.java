@@ -0,0 +1,45 @@
+package de.helmholtz.marketplace.cerebrum.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.List;
+
+/**
+ * A page fetched in cursor mode. It carries no total count; {@code after} is
+ * the cursor of the following page and {@code next} the link to fetch it,
+ * both null on the last page.
+ */
+@Schema(name = "KeysetSlice", description = "a page of results fetched in cursor mode")
+public class CerebrumKeysetSlice<T> extends SliceImpl<T>
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String after;
+    private String next;
+
+    public CerebrumKeysetSlice(List<T> content, Pageable pageable, String after)
+    {
+        super(content, pageable, after != null);
+        this.after = after;
+    }
+
+    @Schema(description = "cursor of the following page", example = "eyJzIjogIm5hbWUuYXNjLHV1aWQuYXNjIn0")
+    public String getAfter()
+    {
+        return after;
+    }
+
+    @Schema(description = "link to the following page",
+            example = "/api/v0/services?paging=cursor&after=eyJzIjogIm5hbWUuYXNjLHV1aWQuYXNjIn0")
+    public String getNext()
+    {
+        return next;
+    }
+
+    public void setNext(String next)
+    {
+        this.next = next;
+    }
+}
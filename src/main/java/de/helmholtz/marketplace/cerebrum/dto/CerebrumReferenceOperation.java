@@ -0,0 +1,28 @@
+package de.helmholtz.marketplace.cerebrum.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+@Schema(name = "ReferenceOperation", description = "adds or removes one related entity")
+@Setter(AccessLevel.PUBLIC)
+@Getter(AccessLevel.PUBLIC)
+public class CerebrumReferenceOperation
+{
+    public static final String ADD = "add";
+    public static final String REMOVE = "remove";
+
+    @NotNull
+    @Pattern(regexp = ADD + "|" + REMOVE)
+    @Schema(description = "the operation to perform, either add or remove", example = "add", required = true)
+    private String op;
+
+    @NotNull
+    @Schema(description = "Unique identifier of the related entity",
+            example = "org-01eac6d7-0d35-1812-a3ed-24aec4231940", required = true)
+    private String uuid;
+}
@@ -0,0 +1,37 @@
+package de.helmholtz.marketplace.cerebrum.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+@Schema(name = "ReferenceOperationResult", description = "the outcome of one reference operation of a batch")
+@Getter(AccessLevel.PUBLIC)
+public class CerebrumReferenceOperationResult
+{
+    public enum Status
+    {
+        ADDED,
+        REMOVED,
+        ALREADY_PRESENT,
+        NOT_PRESENT,
+        NOT_FOUND,
+        INVALID_UUID
+    }
+
+    @Schema(description = "the requested operation", example = "add")
+    private final String op;
+
+    @Schema(description = "Unique identifier of the related entity",
+            example = "org-01eac6d7-0d35-1812-a3ed-24aec4231940")
+    private final String uuid;
+
+    @Schema(description = "outcome of the operation", example = "ADDED")
+    private final Status status;
+
+    public CerebrumReferenceOperationResult(String op, String uuid, Status status)
+    {
+        this.op = op;
+        this.uuid = uuid;
+        this.status = status;
+    }
+}
@@ -0,0 +1,20 @@
+package de.helmholtz.marketplace.cerebrum.entity;
+
+/**
+ * Common contract of all the entities stored by cerebrum. They are all
+ * identified by a prefixed uuid.
+ */
+public interface CerebrumEntity
+{
+    String getUuid();
+
+    void setUuid(String uuid);
+
+    /**
+     * Tells whether the entity is only a link to the stored one: a reference
+     * that was read without being loaded, holding nothing but its uuid.
+     */
+    boolean isLink();
+
+    void setLink(boolean link);
+}
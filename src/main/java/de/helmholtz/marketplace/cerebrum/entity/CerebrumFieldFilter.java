@@ -0,0 +1,71 @@
+package de.helmholtz.marketplace.cerebrum.entity;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes only the selected properties of the entities {@link #restrict
+ * restricted} during the current request; any other entity is written in full.
+ * Takes effect on the object mappers it is {@link #register registered} with.
+ */
+public class CerebrumFieldFilter extends SimpleBeanPropertyFilter
+{
+    public static final String ID = "cerebrumFields";
+    private static final String SELECTIONS = CerebrumFieldFilter.class.getName() + ".selections";
+
+    public static void register(ObjectMapper objectMapper)
+    {
+        objectMapper.addMixIn(CerebrumEntity.class, Filtered.class)
+                .setFilterProvider(new SimpleFilterProvider().addFilter(ID, new CerebrumFieldFilter()));
+    }
+
+    public static void restrict(Object entity, Set<String> properties)
+    {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        Map<Object, Set<String>> selections = getSelections(attributes);
+        if (selections == null) {
+            selections = new IdentityHashMap<>();
+            attributes.setAttribute(SELECTIONS, selections, RequestAttributes.SCOPE_REQUEST);
+        }
+        selections.put(entity, properties);
+    }
+
+    @Override
+    public void serializeAsField(Object pojo, JsonGenerator generator, SerializerProvider provider,
+                                 PropertyWriter writer) throws Exception
+    {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Map<Object, Set<String>> selections = attributes == null ? null : getSelections(attributes);
+        Set<String> properties = selections == null ? null : selections.get(pojo);
+        if (properties == null || properties.contains(writer.getName())) {
+            writer.serializeAsField(pojo, generator, provider);
+        } else if (!generator.canOmitFields()) {
+            writer.serializeAsOmittedField(pojo, generator, provider);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Set<String>> getSelections(RequestAttributes attributes)
+    {
+        return (Map<Object, Set<String>>) attributes.getAttribute(SELECTIONS, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    @JsonFilter(ID)
+    private interface Filtered
+    {
+    }
+}
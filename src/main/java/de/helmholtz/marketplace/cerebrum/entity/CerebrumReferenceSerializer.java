@@ -0,0 +1,33 @@
+package de.helmholtz.marketplace.cerebrum.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Serializes the entities of {@code @DBRef} properties. An entity that is
+ * only a {@link CerebrumEntity#isLink() link} is written as
+ * {@code {"uuid": ...}}; any other is written in full.
+ */
+public class CerebrumReferenceSerializer extends StdSerializer<CerebrumEntity>
+{
+    public CerebrumReferenceSerializer()
+    {
+        super(CerebrumEntity.class);
+    }
+
+    @Override
+    public void serialize(CerebrumEntity value, JsonGenerator generator, SerializerProvider provider)
+            throws IOException
+    {
+        if (value.isLink()) {
+            generator.writeStartObject();
+            generator.writeStringField("uuid", value.getUuid());
+            generator.writeEndObject();
+        } else {
+            provider.findValueSerializer(value.getClass()).serialize(value, generator, provider);
+        }
+    }
+}
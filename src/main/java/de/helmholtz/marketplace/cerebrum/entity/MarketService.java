@@ -1,10 +1,16 @@
 package de.helmholtz.marketplace.cerebrum.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.lang.Nullable;
@@ -23,27 +29,37 @@ import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerato
 
 @Setter(AccessLevel.PUBLIC)
 @Getter(AccessLevel.PUBLIC)
+@CompoundIndex(name = "serviceProviders.$id_1", def = "{'serviceProviders.$id': 1}")
 @Document
-public class MarketService extends AuditMetadata
+public class MarketService extends AuditMetadata implements CerebrumEntity
 {
     @Schema(description = "Unique identifier of the market service.",
             example = "svc-01eac6d7-0d35-1812-a3ed-24aec4231940", required = true)
     @Setter(AccessLevel.NONE)
     @Id
-    private String uuid = generate("svc");
+    private String uuid;
+
+    @JsonIgnore
+    @Transient
+    private boolean link;
 
     @NotNull
     @Schema(description = "Name of a Service", example = "Sync+Share", required = true)
+    @Indexed(name = "name_1")
+    @TextIndexed(weight = 10)
     private String name;
 
     @Schema(description = "Description of a Service",
             example = "A awesome Sync+Share Service provides by Helmholtz Zentrum xy")
+    @TextIndexed
     private String description;
 
     @Schema(description = "Summary of the service's description", example = "Sync+Share Service")
+    @TextIndexed(weight = 3)
     private String summary;
 
     @Schema(description = "Url to a Service", example = "serviceXy.helmholtz.de")
+    @Indexed(name = "entryPoint_1")
     private String entryPoint;
 
     @Schema(description = "The service version number", example = "1.0.1")
@@ -69,17 +85,21 @@ public class MarketService extends AuditMetadata
     private Phase phase;
 
     @Schema(description = "")
+    @TextIndexed(weight = 3)
     private Set<String> targetGroup = new TreeSet<>();
 
     @Schema(description = "")
+    @TextIndexed(weight = 5)
     private Set<String> tags = new TreeSet<>();
 
     @Schema(description = "List of services provided by this organisation")
     @DBRef
+    @JsonSerialize(contentUsing = CerebrumReferenceSerializer.class)
     private List<Organization> serviceProviders = new ArrayList<>();
 
     @Schema(description = "")
     @DBRef
+    @JsonSerialize(contentUsing = CerebrumReferenceSerializer.class)
     private List<Person> managementTeam = new ArrayList<>();
 
     public void setUuid(@Nullable String uuid)
@@ -1,10 +1,15 @@
 package de.helmholtz.marketplace.cerebrum.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.lang.Nullable;
@@ -19,33 +24,43 @@ import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerato
 
 @Setter(AccessLevel.PUBLIC)
 @Getter(AccessLevel.PUBLIC)
+@CompoundIndex(name = "affiliations.$id_1", def = "{'affiliations.$id': 1}")
 @Document
-public class MarketUser extends AuditMetadata
+public class MarketUser extends AuditMetadata implements CerebrumEntity
 {
     @Schema(description = "Unique identifier of the market service.",
             example = "svc-01eac6d7-0d35-1812-a3ed-24aec4231940", required = true)
     @Setter(AccessLevel.NONE)
     @Id
-    private String uuid = generate("usr");
+    private String uuid;
+
+    @JsonIgnore
+    @Transient
+    private boolean link;
 
     @Schema(description = "User chosen name to represent him or herself", example = "pm")
     @Size(max = 20)
+    @Indexed(name = "screenName_1")
     private String screenName;
 
     @Schema(description = "Helmholtz AAI generated unique user identifier",
             example = "110248495921238986420", required = true)
+    @Indexed(name = "sub_1", unique = true, sparse = true)
     private String sub;
 
     @Schema(description = "Helmholtz AAI generated unique user identifier")
     @DBRef
+    @JsonSerialize(using = CerebrumReferenceSerializer.class)
     private Person profile;
 
     @Schema(description = "")
     @DBRef
+    @JsonSerialize(contentUsing = CerebrumReferenceSerializer.class)
     private List<Organization> affiliations = new ArrayList<>();
 
     @Schema(description = "")
     @DBRef
+    @JsonSerialize(contentUsing = CerebrumReferenceSerializer.class)
     private List<MarketService> managedServices = new ArrayList<>();
 
     public void addAffiliation(Organization org)
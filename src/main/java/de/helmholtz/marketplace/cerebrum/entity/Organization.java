@@ -1,11 +1,14 @@
 package de.helmholtz.marketplace.cerebrum.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.validator.constraints.URL;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotNull;
@@ -19,17 +22,22 @@ import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerato
 @Setter(AccessLevel.PUBLIC)
 @Getter(AccessLevel.PUBLIC)
 @Document
-public class Organization
+public class Organization implements CerebrumEntity
 {
     @Schema(description = "Unique identifier of the organisation",
             example = "org-01eac6d7-0d35-1812-a3ed-24aec4231940", required = true)
     @Setter(AccessLevel.NONE)
     @Id
-    private String uuid = generate("org");
+    private String uuid;
+
+    @JsonIgnore
+    @Transient
+    private boolean link;
 
     @Schema(description = "Name of the organisation in full",
             example = "Deutsches Elektronen-Synchrotron", required = true)
     @NotNull
+    @Indexed(name = "name_1")
     private String name;
 
     @Schema(description = "Name of the organisation in German")
@@ -1,10 +1,13 @@
 package de.helmholtz.marketplace.cerebrum.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.Email;
@@ -20,14 +23,19 @@ import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerato
 
 @Setter(AccessLevel.PUBLIC)
 @Getter(AccessLevel.PUBLIC)
+@CompoundIndex(name = "firstName_1_lastName_1", def = "{'firstName': 1, 'lastName': 1}")
 @Document
-public class Person extends AuditMetadata
+public class Person extends AuditMetadata implements CerebrumEntity
 {
     @Schema(description = "Unique identifier of the marketplace user.",
             example = "prn-01eac6d7-0d35-1812-a3ed-24aec4231940", required = true)
     @Setter(AccessLevel.NONE)
     @Id
-    private String uuid = generate("prn");
+    private String uuid;
+
+    @JsonIgnore
+    @Transient
+    private boolean link;
 
     @Schema(description = "first name of the user.", example = "Paul", required = true)
     @NotBlank
@@ -31,6 +31,9 @@ import java.util.Objects;
 import java.util.Set;
 
 import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumEntityNotFoundException;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidCursorException;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidPatchException;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidPropertyException;
 import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidUuidException;
 
 @ControllerAdvice
@@ -204,6 +207,48 @@ public class CerebrumExceptionHandler extends ResponseEntityExceptionHandler
                 cerebrumApiError, new HttpHeaders(), cerebrumApiError.getStatus());
     }
 
+    // 400
+    @ExceptionHandler({CerebrumInvalidCursorException.class})
+    private ResponseEntity<Object> handleInvalidCursor(
+            final CerebrumInvalidCursorException ex,
+            WebRequest request)
+    {
+        final String error = "Invalid cursor";
+
+        final CerebrumApiError cerebrumApiError =
+                new CerebrumApiError(HttpStatus.BAD_REQUEST, ex.getLocalizedMessage(), error);
+        return new ResponseEntity<>(
+                cerebrumApiError, new HttpHeaders(), cerebrumApiError.getStatus());
+    }
+
+    // 400
+    @ExceptionHandler({CerebrumInvalidPropertyException.class})
+    private ResponseEntity<Object> handleInvalidProperty(
+            final CerebrumInvalidPropertyException ex,
+            WebRequest request)
+    {
+        final String error = "Invalid property";
+
+        final CerebrumApiError cerebrumApiError =
+                new CerebrumApiError(HttpStatus.BAD_REQUEST, ex.getLocalizedMessage(), error);
+        return new ResponseEntity<>(
+                cerebrumApiError, new HttpHeaders(), cerebrumApiError.getStatus());
+    }
+
+    // 400
+    @ExceptionHandler({CerebrumInvalidPatchException.class})
+    private ResponseEntity<Object> handleInvalidPatch(
+            final CerebrumInvalidPatchException ex,
+            WebRequest request)
+    {
+        final String error = "Invalid patch";
+
+        final CerebrumApiError cerebrumApiError =
+                new CerebrumApiError(HttpStatus.BAD_REQUEST, ex.getLocalizedMessage(), error);
+        return new ResponseEntity<>(
+                cerebrumApiError, new HttpHeaders(), cerebrumApiError.getStatus());
+    }
+
     //403
     @ExceptionHandler({AccessDeniedException.class})
     public ResponseEntity<Object> handleAccessDeniedException(
@@ -0,0 +1,9 @@
+package de.helmholtz.marketplace.cerebrum.errorhandling.exception;
+
+public class CerebrumInvalidPatchException extends RuntimeException
+{
+    public CerebrumInvalidPatchException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,9 @@
+package de.helmholtz.marketplace.cerebrum.errorhandling.exception;
+
+public class CerebrumInvalidPropertyException extends RuntimeException
+{
+    public CerebrumInvalidPropertyException(String message)
+    {
+        super(message);
+    }
+}
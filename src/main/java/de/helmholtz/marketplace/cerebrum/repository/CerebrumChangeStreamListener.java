@@ -0,0 +1,281 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+
+/**
+ * Follows the change stream of the entity collections once the application is
+ * ready and publishes a {@link CerebrumInvalidationEvent} for every change, so
+ * that the local caches of every node drop what another node has written.
+ *
+ * Every node stores its own resume token in {@value #RESUME_TOKENS}, keyed by
+ * {@code cerebrum.change-stream.instance-id} (the host name by default), so
+ * after a restart or a lost connection the stream continues where it stopped.
+ * Only the tokens of applied changes are stored, at most once a second; the
+ * tokens the server hands out while the stream is idle are merely kept in
+ * memory, and tokens not written for a week expire. If the oplog no
+ * longer reaches back that far, every collection is invalidated and the
+ * stream starts anew. How far the applied changes are behind the cluster time
+ * is published as {@code cerebrum.change-stream.lag}.
+ *
+ * Change streams need a replica set; on a standalone server the caches are
+ * only bounded by their TTL.
+ */
+@Component
+public class CerebrumChangeStreamListener
+{
+    private static final Logger logger = LoggerFactory.getLogger(CerebrumChangeStreamListener.class);
+
+    static final String RESUME_TOKENS = "cerebrumResumeTokens";
+    private static final String RESUME_TOKEN_PREFIX = "invalidation:";
+    private static final int NOT_A_REPLICA_SET = 40573;
+    private static final int HISTORY_LOST = 286;
+    private static final int FATAL_ERROR = 280;
+    private static final long SAVE_INTERVAL_MILLIS = 1000;
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+    private static final Duration RESUME_TOKEN_EXPIRY = Duration.ofDays(7);
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final String resumeTokenId;
+    private final List<String> collectionNames;
+    private final AtomicLong lagMillis = new AtomicLong();
+    private volatile boolean running;
+    private Thread thread;
+    private BsonDocument resumeToken;
+
+    public CerebrumChangeStreamListener(MongoTemplate mongoTemplate,
+                                        ApplicationEventPublisher eventPublisher,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${cerebrum.change-stream.enabled:true}") boolean enabled,
+                                        @Value("${cerebrum.change-stream.instance-id:}") String instanceId)
+    {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.resumeTokenId = RESUME_TOKEN_PREFIX + (instanceId.isBlank() ? hostName() : instanceId);
+        this.collectionNames = Stream.of(MarketService.class, Organization.class, MarketUser.class, Person.class)
+                .map(mongoTemplate::getCollectionName)
+                .collect(Collectors.toList());
+        TimeGauge.builder("cerebrum.change-stream.lag", lagMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("how far the last applied change is behind its cluster time")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void onApplicationReady()
+    {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "cerebrum-change-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void onContextClosed()
+    {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void run()
+    {
+        Duration backoff = Duration.ofSeconds(1);
+        boolean loaded = false;
+        try {
+            while (running) {
+                try {
+                    if (!loaded) {
+                        resumeToken = loadResumeToken();
+                        loaded = true;
+                    }
+                    watch();
+                    backoff = Duration.ofSeconds(1);
+                } catch (MongoException e) {
+                    if (!running) {
+                        return;
+                    }
+                    int code = e instanceof MongoServerException ? ((MongoServerException) e).getCode() : 0;
+                    if (code == NOT_A_REPLICA_SET) {
+                        logger.warn("Change streams need a replica set; caches are not invalidated across nodes");
+                        return;
+                    }
+                    if (resumeToken != null && (code == HISTORY_LOST || code == FATAL_ERROR)) {
+                        logger.warn("Cannot resume the change stream, invalidating every collection", e);
+                        resumeToken = null;
+                        invalidateAll();
+                    } else {
+                        logger.warn("Change stream failed, reconnecting in {}", backoff, e);
+                    }
+                    Thread.sleep(backoff.toMillis());
+                    backoff = backoff.multipliedBy(2);
+                    if (backoff.compareTo(MAX_BACKOFF) > 0) {
+                        backoff = MAX_BACKOFF;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Change stream stopped", e);
+        }
+    }
+
+    /* follows the stream until it is closed, invalidated or fails */
+    private void watch()
+    {
+        ChangeStreamIterable<Document> stream = mongoTemplate.getDb()
+                .watch(List.of(Aggregates.match(Filters.or(
+                        Filters.in("ns.coll", collectionNames),
+                        Filters.in("operationType", "dropDatabase", "invalidate")))))
+                .maxAwaitTime(1, TimeUnit.SECONDS);
+        if (resumeToken != null) {
+            stream.resumeAfter(resumeToken);
+        }
+        long savedAt = System.currentTimeMillis();
+        BsonDocument appliedToken = null;
+        BsonDocument savedToken = null;
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+            while (running) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                if (change == null) {
+                    lagMillis.set(0);
+                } else if (!apply(change)) {
+                    resumeToken = null;
+                    saveResumeToken(null);
+                    return;
+                } else {
+                    appliedToken = change.getResumeToken();
+                }
+                if (cursor.getResumeToken() != null) {
+                    resumeToken = cursor.getResumeToken();
+                }
+                long now = System.currentTimeMillis();
+                if (appliedToken != null && !appliedToken.equals(savedToken)
+                        && (change == null || now - savedAt >= SAVE_INTERVAL_MILLIS)) {
+                    saveResumeToken(appliedToken);
+                    savedToken = appliedToken;
+                    savedAt = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the invalidations of a change.
+     *
+     * @return false if the stream was invalidated and cannot be resumed
+     */
+    boolean apply(ChangeStreamDocument<Document> change)
+    {
+        BsonTimestamp clusterTime = change.getClusterTime();
+        if (clusterTime != null) {
+            lagMillis.set(Math.max(0, System.currentTimeMillis() - clusterTime.getTime() * 1000L));
+        }
+        switch (change.getOperationType()) {
+            case INSERT:
+            case UPDATE:
+            case REPLACE:
+            case DELETE:
+                BsonValue id = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+                if (id != null && id.isString()) {
+                    publish(change.getNamespace().getCollectionName(), id.asString().getValue());
+                }
+                return true;
+            case DROP:
+            case RENAME:
+                publish(change.getNamespace().getCollectionName(), null);
+                return true;
+            case DROP_DATABASE:
+                invalidateAll();
+                return true;
+            case INVALIDATE:
+                invalidateAll();
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private void invalidateAll()
+    {
+        collectionNames.forEach(collectionName -> publish(collectionName, null));
+    }
+
+    private void publish(String collectionName, String uuid)
+    {
+        eventPublisher.publishEvent(new CerebrumInvalidationEvent(collectionName, uuid));
+    }
+
+    private BsonDocument loadResumeToken()
+    {
+        mongoTemplate.getCollection(RESUME_TOKENS).createIndex(Indexes.ascending("savedAt"),
+                new IndexOptions().expireAfter(RESUME_TOKEN_EXPIRY.toSeconds(), TimeUnit.SECONDS));
+        Document stored = mongoTemplate.getCollection(RESUME_TOKENS)
+                .find(new Document("_id", resumeTokenId)).first();
+        Document token = stored == null ? null : stored.get("token", Document.class);
+        return token == null ? null : token.toBsonDocument(Document.class, mongoTemplate.getDb().getCodecRegistry());
+    }
+
+    private void saveResumeToken(BsonDocument token)
+    {
+        mongoTemplate.getCollection(RESUME_TOKENS).replaceOne(new Document("_id", resumeTokenId),
+                new Document("_id", resumeTokenId).append("token", token).append("savedAt", new Date()),
+                new ReplaceOptions().upsert(true));
+    }
+
+    private static String hostName()
+    {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+}
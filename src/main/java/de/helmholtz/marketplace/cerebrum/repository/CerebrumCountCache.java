@@ -0,0 +1,79 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers document counts per collection and query. A count older than
+ * {@code cerebrum.paging.count-cache.ttl} is still returned, while a fresh one
+ * is computed on the task executor; only the first request for a query waits
+ * for the count.
+ */
+@Component
+public class CerebrumCountCache
+{
+    private static final Logger logger = LoggerFactory.getLogger(CerebrumCountCache.class);
+
+    private final Map<String, CachedCount> counts = new ConcurrentHashMap<>();
+    private final TaskExecutor taskExecutor;
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    public CerebrumCountCache(TaskExecutor taskExecutor,
+                              @Value("${cerebrum.paging.count-cache.ttl:60s}") Duration ttl,
+                              @Value("${cerebrum.paging.count-cache.max-entries:10000}") int maxEntries)
+    {
+        this.taskExecutor = taskExecutor;
+        this.ttlMillis = ttl.toMillis();
+        this.maxEntries = maxEntries;
+    }
+
+    public long count(String key, LongSupplier counter)
+    {
+        CachedCount cached = counts.get(key);
+        if (cached == null) {
+            if (counts.size() >= maxEntries) {
+                counts.clear();
+            }
+            long count = counter.getAsLong();
+            counts.put(key, new CachedCount(count));
+            return count;
+        }
+        if (System.currentTimeMillis() - cached.countedAt > ttlMillis
+                && cached.refreshing.compareAndSet(false, true)) {
+            taskExecutor.execute(() -> refresh(key, cached, counter));
+        }
+        return cached.count;
+    }
+
+    private void refresh(String key, CachedCount stale, LongSupplier counter)
+    {
+        try {
+            counts.replace(key, stale, new CachedCount(counter.getAsLong()));
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh the count of {}", key, e);
+            stale.refreshing.set(false);
+        }
+    }
+
+    private static final class CachedCount
+    {
+        private final long count;
+        private final long countedAt = System.currentTimeMillis();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private CachedCount(long count)
+        {
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import java.util.Locale;
+
+/**
+ * How the total of an offset page is obtained.
+ */
+public enum CerebrumCountMode
+{
+    /** count the matching documents on every request */
+    EXACT,
+    /** do not count; the result is a slice that only knows whether a next page exists */
+    NONE,
+    /** use the collection metadata for unfiltered queries, count the others */
+    ESTIMATED,
+    /** reuse a recent count, refreshing it in the background once it is stale */
+    CACHED;
+
+    public static CerebrumCountMode of(String value)
+    {
+        return valueOf(value.toUpperCase(Locale.ROOT));
+    }
+}
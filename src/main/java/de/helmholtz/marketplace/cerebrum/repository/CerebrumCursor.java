@@ -0,0 +1,84 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.springframework.data.domain.Sort;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidCursorException;
+
+/**
+ * Position of the last entity of a keyset page: the values of its sort keys,
+ * ending with the uuid tiebreaker, and the sort order they were taken from.
+ * Clients only ever see the opaque, url-safe encoding.
+ */
+public final class CerebrumCursor
+{
+    private static final String SIGNATURE = "s";
+    private static final String KEYS = "k";
+
+    private final String signature;
+    private final List<Object> keys;
+
+    CerebrumCursor(List<Sort.Order> orders, List<Object> keys)
+    {
+        this(signatureOf(orders), keys);
+    }
+
+    private CerebrumCursor(String signature, List<Object> keys)
+    {
+        this.signature = signature;
+        this.keys = keys;
+    }
+
+    /**
+     * @return the decoded cursor, or null when there is no token
+     * @throws CerebrumInvalidCursorException if the token was not issued by {@link #encode()}
+     */
+    @Nullable
+    public static CerebrumCursor decode(@Nullable String token)
+    {
+        if (token == null) {
+            return null;
+        }
+        try {
+            Document document = Document.parse(
+                    new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8));
+            String signature = document.getString(SIGNATURE);
+            List<Object> keys = document.getList(KEYS, Object.class);
+            if (signature == null || keys == null || keys.isEmpty()) {
+                throw new CerebrumInvalidCursorException(token + " is an invalid cursor");
+            }
+            return new CerebrumCursor(signature, keys);
+        } catch (IllegalArgumentException | JsonParseException | ClassCastException e) {
+            throw new CerebrumInvalidCursorException(token + " is an invalid cursor");
+        }
+    }
+
+    public String encode()
+    {
+        String json = new Document(SIGNATURE, signature).append(KEYS, keys).toJson();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    List<Object> getKeys(List<Sort.Order> orders)
+    {
+        if (!signature.equals(signatureOf(orders)) || keys.size() != orders.size()) {
+            throw new CerebrumInvalidCursorException(
+                    "the cursor was issued for a different sort order than " + signatureOf(orders));
+        }
+        return keys;
+    }
+
+    private static String signatureOf(List<Sort.Order> orders)
+    {
+        return orders.stream()
+                .map(order -> order.getProperty() + "." + order.getDirection().name().toLowerCase())
+                .collect(Collectors.joining(","));
+    }
+}
@@ -0,0 +1,71 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.mongodb.DBRef;
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Resolves {@code @DBRef}s one by one like the default resolver, except while
+ * a read is {@link #deferring deferred}: then no reference is fetched, each
+ * one is recorded and read as an entity holding nothing but its id, to be
+ * loaded later together with the other references of the same read.
+ */
+public class CerebrumDbRefResolver extends DefaultDbRefResolver
+{
+    private final ThreadLocal<Collection<DBRef>> deferred = new ThreadLocal<>();
+
+    public CerebrumDbRefResolver(MongoDatabaseFactory mongoDbFactory)
+    {
+        super(mongoDbFactory);
+    }
+
+    /**
+     * Runs the read, adding the references it came across to {@code references}.
+     */
+    public <T> T deferring(Supplier<T> read, Collection<DBRef> references)
+    {
+        Collection<DBRef> outer = deferred.get();
+        deferred.set(references);
+        try {
+            return read.get();
+        } finally {
+            if (outer == null) {
+                deferred.remove();
+            } else {
+                deferred.set(outer);
+            }
+        }
+    }
+
+    @Override
+    public Document fetch(DBRef dbRef)
+    {
+        Collection<DBRef> references = deferred.get();
+        if (references == null) {
+            return super.fetch(dbRef);
+        }
+        references.add(dbRef);
+        return new Document("_id", dbRef.getId());
+    }
+
+    @Override
+    public List<Document> bulkFetch(List<DBRef> dbRefs)
+    {
+        Collection<DBRef> references = deferred.get();
+        if (references == null) {
+            return super.bulkFetch(dbRefs);
+        }
+        List<Document> documents = new ArrayList<>(dbRefs.size());
+        for (DBRef dbRef : dbRefs) {
+            references.add(dbRef);
+            documents.add(new Document("_id", dbRef.getId()));
+        }
+        return documents;
+    }
+}
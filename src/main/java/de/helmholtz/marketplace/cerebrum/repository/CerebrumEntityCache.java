@@ -0,0 +1,114 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps recently read documents by uuid, one size- and TTL-bounded cache per
+ * collection. Documents rather than entities are cached, so every reader gets
+ * its own instance and its references are resolved like those of any other
+ * read. Writers have to {@link #invalidate} the entities they change; changes
+ * made by other nodes arrive as {@link CerebrumInvalidationEvent}s.
+ *
+ * Hits, misses and evictions are published as the {@code cache.*} meters,
+ * tagged with the collection name.
+ */
+@Component
+public class CerebrumEntityCache
+{
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long maximumSize;
+    private final Duration ttl;
+    private final Map<String, Cache<String, Document>> caches = new ConcurrentHashMap<>();
+
+    public CerebrumEntityCache(MongoTemplate mongoTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${cerebrum.entity-cache.enabled:true}") boolean enabled,
+                               @Value("${cerebrum.entity-cache.maximum-size:10000}") long maximumSize,
+                               @Value("${cerebrum.entity-cache.ttl:10m}") Duration ttl)
+    {
+        this.mongoTemplate = mongoTemplate;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the entity with the given uuid from the cached document, reading
+     * the document on a miss. Missing entities are not cached. When the cache
+     * is disabled, the entity is read by {@code read} instead.
+     */
+    public <T> Optional<T> findByUuid(String uuid, Class<T> entityClass, Supplier<Optional<T>> read)
+    {
+        if (!enabled) {
+            return read.get();
+        }
+        String collectionName = mongoTemplate.getCollectionName(entityClass);
+        Document document = cacheOf(collectionName).get(uuid, id -> mongoTemplate.getCollection(collectionName)
+                .find(new Document("_id", id)).first());
+        return Optional.ofNullable(document).map(d -> mongoTemplate.getConverter().read(entityClass, d));
+    }
+
+    public void invalidate(Class<?> entityClass, String uuid)
+    {
+        if (!enabled) {
+            return;
+        }
+        invalidate(mongoTemplate.getCollectionName(entityClass), uuid);
+    }
+
+    public void invalidate(String collectionName, String uuid)
+    {
+        Cache<String, Document> cache = caches.get(collectionName);
+        if (cache != null) {
+            cache.invalidate(uuid);
+        }
+    }
+
+    public void invalidateAll(String collectionName)
+    {
+        Cache<String, Document> cache = caches.get(collectionName);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @EventListener
+    public void onInvalidation(CerebrumInvalidationEvent event)
+    {
+        if (event.getUuid() == null) {
+            invalidateAll(event.getCollectionName());
+        } else {
+            invalidate(event.getCollectionName(), event.getUuid());
+        }
+    }
+
+    private Cache<String, Document> cacheOf(String collectionName)
+    {
+        return caches.computeIfAbsent(collectionName, name -> {
+            Cache<String, Document> cache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                    .recordStats()
+                    .build();
+            return CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        });
+    }
+}
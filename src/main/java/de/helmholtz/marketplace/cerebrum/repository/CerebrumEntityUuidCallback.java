@@ -0,0 +1,44 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.springframework.core.Ordered;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+import de.helmholtz.marketplace.cerebrum.entity.CerebrumEntity;
+
+import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerator.PrefixEnum.getEntityPrefix;
+import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerator.generate;
+
+/**
+ * Assigns a uuid to an entity that has none when it is about to be written,
+ * so entities read from the database or from a request body do not generate
+ * one only to have it overwritten. It runs after the auditing callback, which
+ * still sees entities without uuid as new and sets their creation date.
+ */
+@Component
+public class CerebrumEntityUuidCallback implements BeforeConvertCallback<CerebrumEntity>, Ordered
+{
+    @Override
+    public CerebrumEntity onBeforeConvert(CerebrumEntity entity, String collection)
+    {
+        return assignUuid(entity);
+    }
+
+    @Override
+    public int getOrder()
+    {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    /**
+     * Sets a new uuid with the prefix of the entity's class if it has none.
+     * For writes that need the uuid before the entity is converted.
+     */
+    public static <T extends CerebrumEntity> T assignUuid(T entity)
+    {
+        if (entity.getUuid() == null) {
+            entity.setUuid(generate(getEntityPrefix(entity.getClass().getSimpleName())));
+        }
+        return entity;
+    }
+}
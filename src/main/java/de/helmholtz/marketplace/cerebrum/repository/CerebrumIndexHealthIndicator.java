@@ -0,0 +1,44 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the last index verification as the {@code indexes} health
+ * component: UP when every declared index exists and no repository filter
+ * scans its collection, DEGRADED otherwise. The service keeps working while
+ * degraded, only slower, so DEGRADED does not turn the overall status DOWN.
+ */
+@Component("indexes")
+public class CerebrumIndexHealthIndicator implements HealthIndicator
+{
+    public static final Status DEGRADED = new Status("DEGRADED");
+
+    private final CerebrumIndexManager indexManager;
+
+    public CerebrumIndexHealthIndicator(CerebrumIndexManager indexManager)
+    {
+        this.indexManager = indexManager;
+    }
+
+    @Override
+    public Health health()
+    {
+        CerebrumIndexReport report = indexManager.getReport();
+        switch (report.getState()) {
+            case PENDING:
+                return Health.unknown().withDetail("state", "verification pending").build();
+            case FAILED:
+                return Health.unknown().withDetail("error", report.getError())
+                        .withDetail("checkedAt", report.getCheckedAt()).build();
+            default:
+                return Health.status(report.isHealthy() ? Status.UP : DEGRADED)
+                        .withDetail("missingIndexes", report.getMissingIndexes())
+                        .withDetail("collectionScans", report.getCollectionScans())
+                        .withDetail("checkedAt", report.getCheckedAt())
+                        .build();
+        }
+    }
+}
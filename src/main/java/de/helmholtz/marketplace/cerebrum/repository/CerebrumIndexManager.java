@@ -0,0 +1,206 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+
+/**
+ * Creates the indexes declared on the entities ({@code @Indexed},
+ * {@code @CompoundIndex}, {@code @TextIndexed}) once the application is
+ * ready, then checks that they exist and that the filters the repositories
+ * use are answered from an index. The outcome is reported by
+ * {@link CerebrumIndexHealthIndicator}.
+ */
+@Component
+public class CerebrumIndexManager
+{
+    private static final Logger logger = LoggerFactory.getLogger(CerebrumIndexManager.class);
+
+    /* the filters of the repository queries and finders, by entity */
+    private static final Map<Class<?>, List<Document>> QUERIES = Map.of(
+            Organization.class, List.of(),
+            MarketService.class, List.of(
+                    new Document("name", ""),
+                    new Document("entryPoint", ""),
+                    new Document("serviceProviders.$id", "")),
+            MarketUser.class, List.of(
+                    new Document("sub", ""),
+                    new Document("screenName", ""),
+                    new Document("affiliations.$id", "")),
+            Person.class, List.of(
+                    new Document("firstName", "").append("lastName", "")));
+
+    private static final String TEXT_INDEX_KEY = "_ftsx";
+
+    private final MongoTemplate mongoTemplate;
+    private final IndexResolver indexResolver;
+    private final TaskExecutor taskExecutor;
+    private final boolean createIndexes;
+    private volatile CerebrumIndexReport report = CerebrumIndexReport.pending();
+
+    public CerebrumIndexManager(MongoTemplate mongoTemplate,
+                                MongoMappingContext mappingContext,
+                                TaskExecutor taskExecutor,
+                                @Value("${cerebrum.indexes.create-on-startup:true}") boolean createIndexes)
+    {
+        this.mongoTemplate = mongoTemplate;
+        this.indexResolver = IndexResolver.create(mappingContext);
+        this.taskExecutor = taskExecutor;
+        this.createIndexes = createIndexes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        taskExecutor.execute(this::verify);
+    }
+
+    public CerebrumIndexReport getReport()
+    {
+        return report;
+    }
+
+    /**
+     * Creates the missing indexes, if enabled, and checks every entity's
+     * indexes and queries.
+     */
+    public CerebrumIndexReport verify()
+    {
+        Map<String, List<String>> missing = new LinkedHashMap<>();
+        Map<String, List<String>> collectionScans = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Class<?>, List<Document>> entry : QUERIES.entrySet()) {
+                String collectionName = mongoTemplate.getCollectionName(entry.getKey());
+                List<String> missingIndexes = verifyIndexes(entry.getKey());
+                if (!missingIndexes.isEmpty()) {
+                    missing.put(collectionName, missingIndexes);
+                }
+                List<String> scans = new ArrayList<>();
+                for (Document filter : entry.getValue()) {
+                    if (isCollectionScan(collectionName, filter)) {
+                        scans.add(String.join(", ", filter.keySet()));
+                    }
+                }
+                if (!scans.isEmpty()) {
+                    collectionScans.put(collectionName, scans);
+                }
+            }
+            report = CerebrumIndexReport.verified(missing, collectionScans);
+            if (!report.isHealthy()) {
+                logger.warn("Missing indexes: {}, queries scanning the collection: {}", missing, collectionScans);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Could not verify the indexes", e);
+            report = CerebrumIndexReport.failed(e.getLocalizedMessage());
+        }
+        return report;
+    }
+
+    private List<String> verifyIndexes(Class<?> entityClass)
+    {
+        IndexOperations indexOperations = mongoTemplate.indexOps(entityClass);
+        Map<Document, String> existing = new LinkedHashMap<>();
+        for (IndexInfo info : indexOperations.getIndexInfo()) {
+            existing.put(keysOf(info), info.getName());
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (IndexDefinition definition : indexResolver.resolveIndexFor(entityClass)) {
+            if (existing.containsKey(definition.getIndexKeys())) {
+                continue;
+            }
+            String name = definition.getIndexOptions().get("name", definition.getIndexKeys().toJson());
+            if (!createIndexes) {
+                missing.add(name);
+                continue;
+            }
+            try {
+                if (isTextIndex(definition.getIndexKeys())) {
+                    /* a collection has at most one text index, so one over other fields is replaced */
+                    for (Map.Entry<Document, String> index : existing.entrySet()) {
+                        if (isTextIndex(index.getKey())) {
+                            indexOperations.dropIndex(index.getValue());
+                            logger.info("Dropped outdated text index {} on {}", index.getValue(),
+                                    mongoTemplate.getCollectionName(entityClass));
+                        }
+                    }
+                }
+                indexOperations.ensureIndex(definition);
+                logger.info("Created index {} on {}", name, mongoTemplate.getCollectionName(entityClass));
+            } catch (RuntimeException e) {
+                logger.warn("Could not create index {}", name, e);
+                missing.add(name + ": " + e.getLocalizedMessage());
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Returns the keys of an existing index as declared. Mongo reports a text
+     * index as {@code {_fts: "text", _ftsx: 1}} and lists its fields in the
+     * weights, which {@link IndexInfo} turns into text fields; the internal
+     * {@code _ftsx} key is left out so that the text fields are matched, though
+     * not their weights.
+     */
+    private static Document keysOf(IndexInfo info)
+    {
+        Document keys = new Document();
+        for (IndexField field : info.getIndexFields()) {
+            if (field.isText()) {
+                keys.append(field.getKey(), "text");
+            } else if (!TEXT_INDEX_KEY.equals(field.getKey())) {
+                keys.append(field.getKey(), field.getDirection() == Sort.Direction.DESC ? -1 : 1);
+            }
+        }
+        return keys;
+    }
+
+    private static boolean isTextIndex(Document keys)
+    {
+        return keys.containsValue("text");
+    }
+
+    private boolean isCollectionScan(String collectionName, Document filter)
+    {
+        Document explain = mongoTemplate.getDb().runCommand(new Document("explain",
+                new Document("find", collectionName).append("filter", filter))
+                .append("verbosity", "queryPlanner"));
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+        return queryPlanner != null && hasStage(queryPlanner.get("winningPlan", Document.class), "COLLSCAN");
+    }
+
+    private static boolean hasStage(Document plan, String stage)
+    {
+        if (plan == null) {
+            return false;
+        }
+        if (stage.equals(plan.getString("stage")) || hasStage(plan.get("inputStage", Document.class), stage)) {
+            return true;
+        }
+        List<Document> inputStages = plan.getList("inputStages", Document.class);
+        return inputStages != null && inputStages.stream().anyMatch(input -> hasStage(input, stage));
+    }
+}
@@ -0,0 +1,83 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of the last index verification: the declared indexes that do not
+ * exist and the repository filters that MongoDB answers with a collection
+ * scan, both keyed by collection.
+ */
+public final class CerebrumIndexReport
+{
+    public enum State
+    {
+        PENDING,
+        VERIFIED,
+        FAILED
+    }
+
+    private final State state;
+    private final Map<String, List<String>> missingIndexes;
+    private final Map<String, List<String>> collectionScans;
+    private final String error;
+    private final Instant checkedAt;
+
+    private CerebrumIndexReport(State state, Map<String, List<String>> missingIndexes,
+                                Map<String, List<String>> collectionScans, String error)
+    {
+        this.state = state;
+        this.missingIndexes = missingIndexes;
+        this.collectionScans = collectionScans;
+        this.error = error;
+        this.checkedAt = state == State.PENDING ? null : Instant.now();
+    }
+
+    static CerebrumIndexReport pending()
+    {
+        return new CerebrumIndexReport(State.PENDING, Collections.emptyMap(), Collections.emptyMap(), null);
+    }
+
+    static CerebrumIndexReport verified(Map<String, List<String>> missingIndexes,
+                                        Map<String, List<String>> collectionScans)
+    {
+        return new CerebrumIndexReport(State.VERIFIED, missingIndexes, collectionScans, null);
+    }
+
+    static CerebrumIndexReport failed(String error)
+    {
+        return new CerebrumIndexReport(State.FAILED, Collections.emptyMap(), Collections.emptyMap(), error);
+    }
+
+    public boolean isHealthy()
+    {
+        return state == State.VERIFIED && missingIndexes.isEmpty() && collectionScans.isEmpty();
+    }
+
+    public State getState()
+    {
+        return state;
+    }
+
+    public Map<String, List<String>> getMissingIndexes()
+    {
+        return missingIndexes;
+    }
+
+    public Map<String, List<String>> getCollectionScans()
+    {
+        return collectionScans;
+    }
+
+    public String getError()
+    {
+        return error;
+    }
+
+    public Instant getCheckedAt()
+    {
+        return checkedAt;
+    }
+}
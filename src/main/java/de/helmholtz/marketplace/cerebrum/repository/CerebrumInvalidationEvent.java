@@ -0,0 +1,39 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Announces that an entity, or every entity of a collection, was changed,
+ * possibly by another node, so that the local caches drop what they hold.
+ */
+public class CerebrumInvalidationEvent
+{
+    private final String collectionName;
+    private final String uuid;
+
+    public CerebrumInvalidationEvent(String collectionName, @Nullable String uuid)
+    {
+        this.collectionName = collectionName;
+        this.uuid = uuid;
+    }
+
+    public String getCollectionName()
+    {
+        return collectionName;
+    }
+
+    /**
+     * @return the uuid of the changed entity, or null if the whole collection changed
+     */
+    @Nullable
+    public String getUuid()
+    {
+        return uuid;
+    }
+
+    @Override
+    public String toString()
+    {
+        return collectionName + (uuid == null ? "" : "/" + uuid);
+    }
+}
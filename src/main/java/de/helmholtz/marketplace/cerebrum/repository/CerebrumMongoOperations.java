@@ -0,0 +1,485 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.mongodb.DBRef;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.ReturnDocument;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.entity.CerebrumEntity;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidCursorException;
+
+/**
+ * Write operations that the derived repositories cannot express, such as
+ * applying an update document to a single entity in one round trip.
+ */
+@Repository
+public class CerebrumMongoOperations
+{
+    private static final String SCORE = "score";
+
+    private final MongoTemplate mongoTemplate;
+    private final CerebrumCountCache countCache;
+
+    public CerebrumMongoOperations(MongoTemplate mongoTemplate, CerebrumCountCache countCache)
+    {
+        this.mongoTemplate = mongoTemplate;
+        this.countCache = countCache;
+    }
+
+    /**
+     * Atomically applies the update to the entity with the given uuid.
+     *
+     * @param guard additional conditions the stored document has to satisfy, may be null
+     * @return the updated entity, or null when no document matched
+     */
+    @Nullable
+    public <T> T updateByUuid(String uuid, @Nullable Criteria guard, Update update, Class<T> entityClass)
+    {
+        Query query = Query.query(Criteria.where("uuid").is(uuid));
+        if (guard != null) {
+            query.addCriteria(guard);
+        }
+        return mongoTemplate.findAndModify(
+                query, update, FindAndModifyOptions.options().returnNew(true), entityClass);
+    }
+
+    /**
+     * Atomically returns the entity matching the query, inserting it first if
+     * there is none. The inserted document holds the equality conditions of
+     * the query, the {@code setOnInsert} fields of {@code insert} and the audit
+     * dates. Should a concurrent insert of the same entity violate a unique
+     * index, the query is run once more, now matching that entity.
+     */
+    public <T> T findOrInsert(Query query, Update insert, Class<T> entityClass)
+    {
+        FindAndModifyOptions options = FindAndModifyOptions.options().upsert(true).returnNew(true);
+        Update update = audit(insert, entityClass);
+        try {
+            return mongoTemplate.findAndModify(query, update, options, entityClass);
+        } catch (DuplicateKeyException e) {
+            return mongoTemplate.findAndModify(query, update, options, entityClass);
+        }
+    }
+
+    /**
+     * Returns a reference to the entity with the given uuid, as stored in a {@code @DBRef} property.
+     */
+    public DBRef referenceTo(String uuid, Class<?> entityClass)
+    {
+        return new DBRef(mongoTemplate.getCollectionName(entityClass), uuid);
+    }
+
+    /**
+     * Adds a reference to the {@code @DBRef} collection {@code property} unless it is already present.
+     *
+     * @return the updated entity, or null when the entity does not exist or already holds the reference
+     */
+    @Nullable
+    public <T> T addReference(String uuid, String property, Class<T> entityClass,
+                              String referenceUuid, Class<?> referenceClass)
+    {
+        Criteria absent = Criteria.where(property + ".$id").ne(referenceUuid);
+        Update update = touch(new Update(), entityClass)
+                .addToSet(property, new DBRef(mongoTemplate.getCollectionName(referenceClass), referenceUuid));
+        return updateByUuid(uuid, absent, update, entityClass);
+    }
+
+    /**
+     * Removes a reference from the {@code @DBRef} collection {@code property}.
+     *
+     * @return the updated entity, or null when the entity does not exist or does not hold the reference
+     */
+    @Nullable
+    public <T> T removeReference(String uuid, String property, Class<T> entityClass,
+                                 String referenceUuid, Class<?> referenceClass)
+    {
+        Criteria present = Criteria.where(property + ".$id").is(referenceUuid);
+        Update update = touch(new Update(), entityClass)
+                .pull(property, new DBRef(mongoTemplate.getCollectionName(referenceClass), referenceUuid));
+        return updateByUuid(uuid, present, update, entityClass);
+    }
+
+    /**
+     * Returns the entity with the given uuid, read with the projection of the query.
+     */
+    @Nullable
+    public <T> T findByUuid(String uuid, Query query, Class<T> entityClass)
+    {
+        return mongoTemplate.findOne(Query.of(query).addCriteria(Criteria.where("uuid").is(uuid)), entityClass);
+    }
+
+    public boolean existsByUuid(String uuid, Class<?> entityClass)
+    {
+        return mongoTemplate.exists(Query.query(Criteria.where("uuid").is(uuid)), entityClass);
+    }
+
+    /**
+     * Returns those of the given uuids for which an entity exists, in one query.
+     */
+    public Set<String> findExistingUuids(Collection<String> uuids, Class<?> entityClass)
+    {
+        return new HashSet<>(mongoTemplate.findDistinct(
+                Query.query(Criteria.where("uuid").in(uuids)), "uuid", entityClass, String.class));
+    }
+
+    /**
+     * Makes the {@code @DBRef} collection {@code property} hold the references
+     * to {@code added} and none to {@code removed}, in a single findAndModify.
+     * The update is a pipeline evaluated against the stored references, so
+     * references already held keep their position and the last modified date
+     * only moves if the collection changed.
+     *
+     * @return the ids held before the update, or null when the entity does not exist
+     */
+    @Nullable
+    public Set<String> updateReferences(String uuid, String property, Class<?> entityClass,
+                                        Collection<String> added, Collection<String> removed,
+                                        Class<?> referenceClass)
+    {
+        MongoPersistentEntity<?> persistentEntity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+        String fieldName = persistentEntity.getRequiredPersistentProperty(property).getFieldName();
+        String collectionName = mongoTemplate.getCollectionName(referenceClass);
+        Document held = new Document("$ifNull", List.of("$" + fieldName, List.of()));
+        Document toAdd = new Document("$literal", List.of(toReferences(collectionName, added)));
+        Document toRemove = new Document("$literal", List.of(toReferences(collectionName, removed)));
+        Document kept = new Document("$filter", new Document("input", held)
+                .append("as", "reference")
+                .append("cond", new Document("$not", List.of(new Document("$in", List.of("$$reference", toRemove))))));
+        Document missing = new Document("$filter", new Document("input", toAdd)
+                .append("as", "reference")
+                .append("cond", new Document("$not", List.of(new Document("$in", List.of("$$reference", held))))));
+
+        Document set = new Document(fieldName, new Document("$concatArrays", List.of(kept, missing)));
+        MongoPersistentProperty lastModified = persistentEntity.getPersistentProperty(LastModifiedDate.class);
+        if (lastModified != null && lastModified.getType() == long.class) {
+            Document changed = new Document("$or", List.of(
+                    new Document("$gt", List.of(new Document("$size",
+                            new Document("$setIntersection", List.of(held, toRemove))), 0)),
+                    new Document("$gt", List.of(new Document("$size", missing), 0))));
+            set.append(lastModified.getFieldName(), new Document("$cond", List.of(
+                    changed, System.currentTimeMillis(), "$" + lastModified.getFieldName())));
+        }
+
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions()
+                .projection(new Document(fieldName, 1))
+                .returnDocument(ReturnDocument.BEFORE);
+        Document previous = mongoTemplate.execute(entityClass, collection -> collection.findOneAndUpdate(
+                new Document("_id", uuid), List.of(new Document("$set", set)), options));
+        return previous == null ? null : referenceIds(previous, fieldName);
+    }
+
+    /**
+     * Replaces each entity by uuid, inserting the ones that do not exist yet,
+     * in a single unordered bulk write. Entities without uuid are given one.
+     * The creation date is only written when an entity is inserted; the last
+     * modified date is always written.
+     *
+     * @throws org.springframework.data.mongodb.BulkOperationException if some of the writes failed;
+     * the others are applied regardless
+     */
+    public <T extends CerebrumEntity> BulkWriteResult upsertAll(List<T> entities, Class<T> entityClass)
+    {
+        MongoPersistentEntity<?> persistentEntity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, entityClass);
+        for (T entity : entities) {
+            CerebrumEntityUuidCallback.assignUuid(entity);
+            operations.upsert(Query.query(Criteria.where("uuid").is(entity.getUuid())),
+                    replacement(entity, persistentEntity));
+        }
+        return operations.execute();
+    }
+
+    /**
+     * Returns the update that replaces the stored entity with the given one,
+     * leaving its id and creation date alone. Properties the entity does not
+     * hold are unset, as a replacement would drop them.
+     */
+    private Update replacement(Object entity, MongoPersistentEntity<?> persistentEntity)
+    {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(entity, document);
+        document.remove("_id");
+
+        Update update = new Update();
+        long now = System.currentTimeMillis();
+        for (MongoPersistentProperty property : persistentEntity) {
+            String fieldName = property.getFieldName();
+            if (property.isIdProperty()) {
+                continue;
+            }
+            if (property.isAnnotationPresent(CreatedDate.class) && property.getType() == long.class) {
+                document.remove(fieldName);
+                update.setOnInsert(fieldName, now);
+            } else if (property.isAnnotationPresent(LastModifiedDate.class) && property.getType() == long.class) {
+                document.put(fieldName, now);
+            } else if (!document.containsKey(fieldName)) {
+                update.unset(fieldName);
+            }
+        }
+        document.forEach(update::set);
+        return update;
+    }
+
+    /**
+     * Fetches a page of the entities matching the query, obtaining the total
+     * as the count mode says. With {@link CerebrumCountMode#NONE} the result is
+     * a plain slice, otherwise a page.
+     */
+    public <T> Slice<T> findPage(Query query, Pageable pageable, CerebrumCountMode count, Class<T> entityClass)
+    {
+        Query pageQuery = Query.of(query).with(pageable);
+        if (count == CerebrumCountMode.NONE) {
+            int size = pageable.getPageSize();
+            List<T> content = mongoTemplate.find(pageQuery.limit(size + 1), entityClass);
+            boolean hasNext = content.size() > size;
+            return new SliceImpl<>(hasNext ? new ArrayList<>(content.subList(0, size)) : content, pageable, hasNext);
+        }
+        List<T> content = mongoTemplate.find(pageQuery, entityClass);
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(query, count, entityClass));
+    }
+
+    private long count(Query query, CerebrumCountMode count, Class<?> entityClass)
+    {
+        String collectionName = mongoTemplate.getCollectionName(entityClass);
+        switch (count) {
+            case ESTIMATED:
+                if (query.getQueryObject().isEmpty()) {
+                    return mongoTemplate.getCollection(collectionName).estimatedDocumentCount();
+                }
+                return mongoTemplate.count(query, entityClass);
+            case CACHED:
+                return countCache.count(collectionName + query.getQueryObject().toJson(),
+                        () -> mongoTemplate.count(query, entityClass));
+            default:
+                return mongoTemplate.count(query, entityClass);
+        }
+    }
+
+    /**
+     * Fetches the entities matching the query that follow the cursor in sort
+     * order, without skipping over or counting the preceding ones. The uuid is
+     * appended to the sort as a tiebreaker, so every entity has a unique
+     * position; sort properties have to be top-level, non-reference fields.
+     * They are added to the projection of the query, if it has one.
+     *
+     * @param cursor position of the last entity of the previous page, or null for the first page
+     */
+    public <T> CerebrumKeysetSlice<T> findSlice(Query query, Sort sort, int size,
+                                                @Nullable CerebrumCursor cursor, Class<T> entityClass)
+    {
+        MongoPersistentEntity<?> persistentEntity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+        List<Sort.Order> orders = keysetOrders(sort, persistentEntity);
+        if (cursor != null) {
+            query.addCriteria(following(orders, cursor.getKeys(orders)));
+        }
+        if (query.getFieldsObject().containsValue(1)) {
+            orders.forEach(order -> query.fields().include(order.getProperty()));
+        }
+        query.with(Sort.by(orders)).limit(size + 1);
+
+        List<T> content = mongoTemplate.find(query, entityClass);
+        String after = null;
+        if (content.size() > size) {
+            content = new ArrayList<>(content.subList(0, size));
+            after = new CerebrumCursor(orders, keysOf(content.get(size - 1), orders, persistentEntity)).encode();
+        }
+        return new CerebrumKeysetSlice<>(content, PageRequest.of(0, size, Sort.by(orders)), after);
+    }
+
+    /**
+     * Fetches the entities matching the text search that follow the cursor,
+     * most relevant first. Relevance is the score of the collection's text
+     * index, weighted by field; entities of equal score are ordered by uuid.
+     * Only the fields of the projection of the query are read, if it has one.
+     *
+     * @param text words to search for, as in a MongoDB {@code $text} query
+     * @param cursor position of the last entity of the previous page, or null for the first page
+     */
+    public <T> CerebrumKeysetSlice<T> search(String text, Query projection, int size,
+                                             @Nullable CerebrumCursor cursor, Class<T> entityClass)
+    {
+        MongoPersistentEntity<?> persistentEntity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+        String id = persistentEntity.getRequiredIdProperty().getFieldName();
+        List<Sort.Order> orders = List.of(
+                Sort.Order.desc(SCORE), Sort.Order.asc(persistentEntity.getRequiredIdProperty().getName()));
+
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", new Document("$text", new Document("$search", text))));
+        pipeline.add(new Document("$addFields", new Document(SCORE, new Document("$meta", "textScore"))));
+        if (cursor != null) {
+            List<Object> keys = cursor.getKeys(orders);
+            pipeline.add(new Document("$match", new Document("$or", List.of(
+                    new Document(SCORE, new Document("$lt", keys.get(0))),
+                    new Document(SCORE, keys.get(0)).append(id, new Document("$gt", keys.get(1)))))));
+        }
+        pipeline.add(new Document("$sort", new Document(SCORE, -1).append(id, 1)));
+        pipeline.add(new Document("$limit", size + 1));
+        Document fields = new Document();
+        for (String property : projection.getFieldsObject().keySet()) {
+            MongoPersistentProperty persistentProperty = persistentEntity.getPersistentProperty(property);
+            fields.append(persistentProperty == null ? property : persistentProperty.getFieldName(), 1);
+        }
+        if (!fields.isEmpty()) {
+            pipeline.add(new Document("$project", fields.append(SCORE, 1)));
+        }
+
+        List<Document> documents = mongoTemplate.getCollection(mongoTemplate.getCollectionName(entityClass))
+                .aggregate(pipeline)
+                .into(new ArrayList<>());
+        String after = null;
+        if (documents.size() > size) {
+            documents = documents.subList(0, size);
+            Document last = documents.get(size - 1);
+            after = new CerebrumCursor(orders, List.of(last.get(SCORE), last.get(id))).encode();
+        }
+        List<T> content = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            content.add(mongoTemplate.getConverter().read(entityClass, document));
+        }
+        return new CerebrumKeysetSlice<>(content, PageRequest.of(0, size, Sort.by(orders)), after);
+    }
+
+    private static List<Sort.Order> keysetOrders(Sort sort, MongoPersistentEntity<?> persistentEntity)
+    {
+        MongoPersistentProperty idProperty = persistentEntity.getRequiredIdProperty();
+        List<Sort.Order> orders = new ArrayList<>();
+        boolean unique = false;
+        for (Sort.Order order : sort) {
+            MongoPersistentProperty property = persistentEntity.getPersistentProperty(order.getProperty());
+            if (property == null || property.isAssociation() || property.isEntity()
+                    || property.isCollectionLike() || property.isMap()) {
+                throw new CerebrumInvalidCursorException(
+                        order.getProperty() + " cannot be used to sort in cursor mode");
+            }
+            orders.add(order);
+            unique |= property.isIdProperty();
+        }
+        if (!unique) {
+            orders.add(Sort.Order.asc(idProperty.getName()));
+        }
+        return orders;
+    }
+
+    private List<Object> keysOf(Object entity, List<Sort.Order> orders, MongoPersistentEntity<?> persistentEntity)
+    {
+        PersistentPropertyAccessor<Object> accessor = persistentEntity.getPropertyAccessor(entity);
+        List<Object> keys = new ArrayList<>(orders.size());
+        for (Sort.Order order : orders) {
+            Object value = accessor.getProperty(persistentEntity.getRequiredPersistentProperty(order.getProperty()));
+            keys.add(mongoTemplate.getConverter().convertToMongoType(value));
+        }
+        return keys;
+    }
+
+    /**
+     * Matches the entities sorting after the given keys: those equal on the
+     * first i keys and strictly after on key i, for any i. Missing values sort
+     * before all others, as they do in MongoDB.
+     */
+    private static Criteria following(List<Sort.Order> orders, List<Object> keys)
+    {
+        List<Criteria> branches = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            Criteria after = after(orders.get(i), keys.get(i));
+            if (after == null) {
+                continue;
+            }
+            List<Criteria> branch = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                branch.add(Criteria.where(orders.get(j).getProperty()).is(keys.get(j)));
+            }
+            branch.add(after);
+            branches.add(branch.size() == 1 ? after : new Criteria().andOperator(branch.toArray(new Criteria[0])));
+        }
+        return new Criteria().orOperator(branches.toArray(new Criteria[0]));
+    }
+
+    @Nullable
+    private static Criteria after(Sort.Order order, @Nullable Object key)
+    {
+        String property = order.getProperty();
+        if (order.isAscending()) {
+            return key == null ? Criteria.where(property).ne(null) : Criteria.where(property).gt(key);
+        }
+        return key == null ? null : new Criteria().orOperator(
+                Criteria.where(property).lt(key), Criteria.where(property).is(null));
+    }
+
+    private static Set<String> referenceIds(Document document, String fieldName)
+    {
+        Set<String> ids = new HashSet<>();
+        List<?> references = document.get(fieldName, List.class);
+        if (references != null) {
+            for (Object reference : references) {
+                if (reference instanceof DBRef) {
+                    ids.add(String.valueOf(((DBRef) reference).getId()));
+                } else if (reference instanceof Document) {
+                    ids.add(String.valueOf(((Document) reference).get("$id")));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static Object[] toReferences(String collectionName, Collection<String> uuids)
+    {
+        return uuids.stream().map(uuid -> new DBRef(collectionName, uuid)).toArray();
+    }
+
+    private Update audit(Update insert, Class<?> entityClass)
+    {
+        MongoPersistentEntity<?> persistentEntity = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entityClass);
+        long now = System.currentTimeMillis();
+        for (Class<? extends Annotation> date : List.of(CreatedDate.class, LastModifiedDate.class)) {
+            MongoPersistentProperty property = persistentEntity.getPersistentProperty(date);
+            if (property != null && property.getType() == long.class) {
+                insert.setOnInsert(property.getFieldName(), now);
+            }
+        }
+        return insert;
+    }
+
+    private Update touch(Update update, Class<?> entityClass)
+    {
+        MongoPersistentProperty lastModified = mongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(entityClass).getPersistentProperty(LastModifiedDate.class);
+        if (lastModified != null && lastModified.getType() == long.class) {
+            update.set(lastModified.getFieldName(), System.currentTimeMillis());
+        }
+        return update;
+    }
+}
@@ -0,0 +1,80 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import de.helmholtz.marketplace.cerebrum.entity.CerebrumFieldFilter;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidPropertyException;
+
+/**
+ * Turns a sparse fieldset, the top-level properties a client asked for, into
+ * a MongoDB projection, so the other properties are neither read nor sent by
+ * the database. The uuid is always part of the fieldset.
+ */
+@Component
+public class CerebrumProjector
+{
+    private static final String UUID = "uuid";
+
+    private final MongoMappingContext mappingContext;
+
+    public CerebrumProjector(MongoMappingContext mappingContext)
+    {
+        this.mappingContext = mappingContext;
+    }
+
+    /**
+     * Restricts the query to the fields, if any are given.
+     *
+     * @throws CerebrumInvalidPropertyException if a field is not a property of the entity
+     */
+    public Query project(Query query, Class<?> entityClass, @Nullable Collection<String> fields)
+    {
+        if (fields == null || fields.isEmpty()) {
+            return query;
+        }
+        MongoPersistentEntity<?> persistentEntity = mappingContext.getRequiredPersistentEntity(entityClass);
+        for (String field : fields) {
+            if (persistentEntity.getPersistentProperty(field) == null) {
+                throw new CerebrumInvalidPropertyException(
+                        field + " is not a property of " + entityClass.getSimpleName());
+            }
+            query.fields().include(field);
+        }
+        query.fields().include(UUID);
+        return query;
+    }
+
+    /**
+     * Leaves out the properties outside the fields when the entities are
+     * written in the response, if any fields are given.
+     */
+    public <S extends Iterable<?>> S restrict(S entities, @Nullable Collection<String> fields)
+    {
+        if (fields != null && !fields.isEmpty()) {
+            Set<String> properties = new HashSet<>(fields);
+            properties.add(UUID);
+            for (Object entity : entities) {
+                CerebrumFieldFilter.restrict(entity, properties);
+            }
+        }
+        return entities;
+    }
+
+    public <T> T restrictOne(T entity, @Nullable Collection<String> fields)
+    {
+        if (fields != null && !fields.isEmpty()) {
+            Set<String> properties = new HashSet<>(fields);
+            properties.add(UUID);
+            CerebrumFieldFilter.restrict(entity, properties);
+        }
+        return entity;
+    }
+}
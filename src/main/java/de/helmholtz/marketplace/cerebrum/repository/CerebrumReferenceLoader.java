@@ -0,0 +1,233 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.mongodb.DBRef;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import de.helmholtz.marketplace.cerebrum.entity.CerebrumEntity;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidPropertyException;
+
+/**
+ * Reads entities without resolving their {@code @DBRef}s one by one. The
+ * references are left as {@link CerebrumEntity#isLink() links} holding only
+ * the uuid, except for the properties the caller asks to expand: the
+ * references of those, across all entities of the read, are loaded with one
+ * {@code $in} query per referenced collection. The references of the loaded
+ * entities are left as links. Reads and writes alike return their entities
+ * through the loader, so every response renders references the same way.
+ */
+@Component
+public class CerebrumReferenceLoader
+{
+    private final MongoTemplate mongoTemplate;
+    private final CerebrumDbRefResolver dbRefResolver;
+    private final Map<String, Class<?>> entityClasses = new ConcurrentHashMap<>();
+
+    public CerebrumReferenceLoader(MongoTemplate mongoTemplate, CerebrumDbRefResolver dbRefResolver)
+    {
+        this.mongoTemplate = mongoTemplate;
+        this.dbRefResolver = dbRefResolver;
+    }
+
+    /**
+     * Runs the read, typically a repository or template query, and resolves
+     * the references of the expanded properties of the entities it returns.
+     *
+     * @param expand names of {@code @DBRef} properties of {@code entityClass}, may be null
+     */
+    public <S extends Iterable<?>> S load(Supplier<S> read, Class<?> entityClass, @Nullable Collection<String> expand)
+    {
+        Set<String> expanded = checkExpand(entityClass, expand);
+        Set<DBRef> references = new HashSet<>();
+        S entities = dbRefResolver.deferring(read, references);
+        if (references.isEmpty()) {
+            return entities;
+        }
+
+        Set<String> placeholders = keysOf(references);
+        Map<String, Set<Object>> idsByCollection = new HashMap<>();
+        for (Object entity : entities) {
+            forEachReference(entity, placeholders, (property, reference) -> {
+                if (expanded.contains(property.getName())) {
+                    idsByCollection.computeIfAbsent(collectionOf(property), c -> new HashSet<>())
+                            .add(idOf(reference));
+                } else {
+                    ((CerebrumEntity) reference).setLink(true);
+                }
+            });
+        }
+        if (idsByCollection.isEmpty()) {
+            return entities;
+        }
+
+        Set<DBRef> nestedReferences = new HashSet<>();
+        Map<String, Object> loaded = fetch(idsByCollection, nestedReferences);
+        for (Object entity : entities) {
+            replaceReferences(entity, expanded, placeholders, loaded);
+        }
+        Set<String> nestedPlaceholders = keysOf(nestedReferences);
+        for (Object entity : loaded.values()) {
+            forEachReference(entity, nestedPlaceholders,
+                    (property, reference) -> ((CerebrumEntity) reference).setLink(true));
+        }
+        return entities;
+    }
+
+    public <T> T loadOne(Supplier<T> read, Class<T> entityClass, @Nullable Collection<String> expand)
+    {
+        return load(() -> Collections.singletonList(read.get()), entityClass, expand).get(0);
+    }
+
+    private Set<String> checkExpand(Class<?> entityClass, @Nullable Collection<String> expand)
+    {
+        if (expand == null || expand.isEmpty()) {
+            return Collections.emptySet();
+        }
+        MongoPersistentEntity<?> persistentEntity = persistentEntityOf(entityClass);
+        for (String name : expand) {
+            MongoPersistentProperty property = persistentEntity.getPersistentProperty(name);
+            if (property == null || !property.isDbReference()) {
+                throw new CerebrumInvalidPropertyException(
+                        name + " is not a reference of " + entityClass.getSimpleName());
+            }
+        }
+        return new HashSet<>(expand);
+    }
+
+    private Map<String, Object> fetch(Map<String, Set<Object>> idsByCollection, Set<DBRef> nestedReferences)
+    {
+        Map<String, Object> loaded = new HashMap<>();
+        for (Map.Entry<String, Set<Object>> entry : idsByCollection.entrySet()) {
+            Class<?> entityClass = entityClassOf(entry.getKey());
+            Query query = Query.query(Criteria.where("_id").in(entry.getValue()));
+            List<?> entities = dbRefResolver.deferring(
+                    () -> mongoTemplate.find(query, entityClass, entry.getKey()), nestedReferences);
+            for (Object entity : entities) {
+                loaded.put(key(entry.getKey(), idOf(entity)), entity);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Swaps the placeholders of the expanded references for the loaded
+     * entities, dropping the references that no longer resolve.
+     */
+    private void replaceReferences(Object entity, Set<String> expanded,
+                                   Set<String> placeholders, Map<String, Object> loaded)
+    {
+        MongoPersistentEntity<?> persistentEntity = persistentEntityOf(entity.getClass());
+        PersistentPropertyAccessor<Object> accessor = persistentEntity.getPropertyAccessor(entity);
+        for (String name : expanded) {
+            MongoPersistentProperty property = persistentEntity.getRequiredPersistentProperty(name);
+            Object value = accessor.getProperty(property);
+            String collectionName = collectionOf(property);
+            if (value instanceof Collection) {
+                Collection<Object> resolved = value instanceof Set ? new LinkedHashSet<>() : new ArrayList<>();
+                for (Object reference : (Collection<?>) value) {
+                    Object target = resolve(reference, collectionName, placeholders, loaded);
+                    if (target != null) {
+                        resolved.add(target);
+                    }
+                }
+                accessor.setProperty(property, resolved);
+            } else if (value != null) {
+                accessor.setProperty(property, resolve(value, collectionName, placeholders, loaded));
+            }
+        }
+    }
+
+    private Object resolve(Object reference, String collectionName, Set<String> placeholders, Map<String, Object> loaded)
+    {
+        String key = key(collectionName, idOf(reference));
+        return placeholders.contains(key) ? loaded.get(key) : reference;
+    }
+
+    private void forEachReference(Object entity, Set<String> placeholders, ReferenceVisitor visitor)
+    {
+        MongoPersistentEntity<?> persistentEntity = persistentEntityOf(entity.getClass());
+        PersistentPropertyAccessor<Object> accessor = persistentEntity.getPropertyAccessor(entity);
+        for (MongoPersistentProperty property : persistentEntity) {
+            if (!property.isDbReference()) {
+                continue;
+            }
+            Object value = accessor.getProperty(property);
+            Iterable<?> references = value instanceof Collection
+                    ? (Collection<?>) value
+                    : value == null ? Collections.emptyList() : Collections.singletonList(value);
+            for (Object reference : references) {
+                if (placeholders.contains(key(collectionOf(property), idOf(reference)))) {
+                    visitor.visit(property, reference);
+                }
+            }
+        }
+    }
+
+    private String collectionOf(MongoPersistentProperty property)
+    {
+        return mongoTemplate.getCollectionName(property.getActualType());
+    }
+
+    private Class<?> entityClassOf(String collectionName)
+    {
+        return entityClasses.computeIfAbsent(collectionName, name -> {
+            for (MongoPersistentEntity<?> persistentEntity
+                    : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()) {
+                if (persistentEntity.isAnnotationPresent(Document.class)
+                        && name.equals(persistentEntity.getCollection())) {
+                    return persistentEntity.getType();
+                }
+            }
+            throw new IllegalStateException("No entity is mapped to the collection " + name);
+        });
+    }
+
+    private Object idOf(Object entity)
+    {
+        return persistentEntityOf(entity.getClass()).getIdentifierAccessor(entity).getIdentifier();
+    }
+
+    private MongoPersistentEntity<?> persistentEntityOf(Class<?> type)
+    {
+        return mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+    }
+
+    private static Set<String> keysOf(Set<DBRef> references)
+    {
+        Set<String> keys = new HashSet<>();
+        for (DBRef reference : references) {
+            keys.add(key(reference.getCollectionName(), reference.getId()));
+        }
+        return keys;
+    }
+
+    private static String key(String collectionName, Object id)
+    {
+        return collectionName + '/' + id;
+    }
+
+    @FunctionalInterface
+    private interface ReferenceVisitor
+    {
+        void visit(MongoPersistentProperty property, Object reference);
+    }
+}
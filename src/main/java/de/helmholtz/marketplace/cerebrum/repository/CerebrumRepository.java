@@ -0,0 +1,19 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.util.Optional;
+
+/**
+ * Operations shared by every cerebrum repository, so that the generic
+ * service layer can call them directly instead of looking them up by name.
+ */
+@NoRepositoryBean
+public interface CerebrumRepository<T> extends MongoRepository<T, String>
+{
+    Optional<T> findByUuid(String uuid);
+
+    @SuppressWarnings("UnusedReturnValue")
+    Long deleteByUuid(String uuid);
+}
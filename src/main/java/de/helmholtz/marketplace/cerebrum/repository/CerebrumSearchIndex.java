@@ -0,0 +1,678 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidCursorException;
+
+/**
+ * Inverted index of the words of the services' names, tags, target groups,
+ * summaries and descriptions, the properties of the text index of the
+ * database, held in memory to search the services without a round trip to
+ * that index. It is enabled by {@code cerebrum.search-index.enabled}, built from the database once the
+ * application is ready and kept current by the writes of the service layer
+ * and by {@link CerebrumInvalidationEvent}s; until it is built, {@link #search}
+ * returns null and the database has to be searched instead.
+ *
+ * Every word of a query has to match a word of a service: exactly, as its
+ * prefix or, for words of four letters or more, with up to one typo per four
+ * letters (two at most). Services containing a -word are left out, as with
+ * the text index; queries quoting a phrase are left to the text index, since
+ * this index does not know where the words occur. Services are ranked by how closely each word matched
+ * and by the property it matched in. The ranks are not comparable with the
+ * scores of the text index, so the cursors of either are rejected by the
+ * other. The postings of a word are sorted arrays of int document ids, with a
+ * bit mask of the properties next to each id.
+ *
+ * The estimated heap size of the index is published as
+ * {@code cerebrum.search-index.memory}, the numbers of services and words as
+ * {@code cerebrum.search-index.documents} and {@code cerebrum.search-index.terms},
+ * and the duration of full builds as {@code cerebrum.search-index.rebuild}.
+ */
+@Component
+public class CerebrumSearchIndex
+{
+    private static final Logger logger = LoggerFactory.getLogger(CerebrumSearchIndex.class);
+
+    /* the sort key of the cursors, named unlike the score of the text index */
+    private static final String RELEVANCE = "relevance";
+    private static final String UUID = "uuid";
+    /* the indexed properties, by their bit in the postings, and their weights in the text index */
+    private static final String[] PROPERTIES = {"name", "tags", "targetGroup", "summary", "description"};
+    private static final float[] WEIGHTS = {10, 5, 3, 3, 1};
+    private static final float EXACT = 1.0f;
+    private static final float PREFIX = 0.6f;
+    private static final float TYPO = 0.4f;
+    private static final List<Sort.Order> ORDERS = List.of(Sort.Order.desc(RELEVANCE), Sort.Order.asc(UUID));
+
+    private final MongoTemplate mongoTemplate;
+    private final TaskExecutor taskExecutor;
+    private final boolean enabled;
+    private final Timer rebuildTimer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Index index;
+    /* writes made while a build reads the database, replayed onto the new index; guarded by lock */
+    private List<Consumer<Index>> pending;
+
+    public CerebrumSearchIndex(MongoTemplate mongoTemplate,
+                               TaskExecutor taskExecutor,
+                               MeterRegistry meterRegistry,
+                               @Value("${cerebrum.search-index.enabled:false}") boolean enabled)
+    {
+        this.mongoTemplate = mongoTemplate;
+        this.taskExecutor = taskExecutor;
+        this.enabled = enabled;
+        this.rebuildTimer = meterRegistry.timer("cerebrum.search-index.rebuild");
+        if (enabled) {
+            Gauge.builder("cerebrum.search-index.memory", this, CerebrumSearchIndex::estimatedSize)
+                    .baseUnit(BaseUnits.BYTES)
+                    .register(meterRegistry);
+            Gauge.builder("cerebrum.search-index.documents", this, i -> i.read(Index::documents))
+                    .register(meterRegistry);
+            Gauge.builder("cerebrum.search-index.terms", this, i -> i.read(built -> built.terms.size()))
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady()
+    {
+        if (enabled) {
+            taskExecutor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Keeps the index current with changes made by other nodes or by writes
+     * that bypass the service layer.
+     */
+    @EventListener
+    public void onInvalidation(CerebrumInvalidationEvent event)
+    {
+        if (!enabled || !mongoTemplate.getCollectionName(MarketService.class).equals(event.getCollectionName())) {
+            return;
+        }
+        if (event.getUuid() == null) {
+            taskExecutor.execute(this::rebuild);
+            return;
+        }
+        MarketService service = mongoTemplate.findOne(
+                indexedProperties(Query.query(Criteria.where(UUID).is(event.getUuid()))), MarketService.class);
+        if (service == null) {
+            remove(event.getUuid());
+        } else {
+            put(service);
+        }
+    }
+
+    /**
+     * Reads every service from the database into a new index, which then
+     * replaces the current one. Searches keep using the current index
+     * meanwhile.
+     */
+    public synchronized void rebuild()
+    {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Index built = new Index();
+        boolean complete = false;
+        try {
+            rebuildTimer.record(() -> {
+                try (CloseableIterator<MarketService> services =
+                             mongoTemplate.stream(indexedProperties(new Query()), MarketService.class)) {
+                    while (services.hasNext()) {
+                        MarketService service = services.next();
+                        built.put(service.getUuid(), termsOf(service));
+                    }
+                }
+                built.trim();
+            });
+            complete = true;
+        } catch (RuntimeException e) {
+            logger.error("Could not build the search index", e);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (complete) {
+                for (Consumer<Index> write : pending) {
+                    write.accept(built);
+                }
+                index = built;
+                logger.info("Built the search index of {} services", built.documents());
+            }
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes the service, replacing the words it was indexed with before.
+     * The service has to hold all of the indexed properties.
+     */
+    public void put(MarketService service)
+    {
+        if (enabled) {
+            String uuid = service.getUuid();
+            Map<String, Byte> terms = termsOf(service);
+            write(built -> built.put(uuid, terms));
+        }
+    }
+
+    public void remove(String uuid)
+    {
+        if (enabled) {
+            write(built -> built.remove(uuid));
+        }
+    }
+
+    /**
+     * Fetches the services matching the text that follow the cursor, most
+     * relevant first, reading only the page with the projection of the query.
+     * Services of equal score are ordered by uuid.
+     *
+     * @param cursor position of the last service of the previous page, or null for the first page
+     * @return the page, or null when the index is disabled, not built yet or the text quotes a
+     * phrase, which only the text index can match
+     * @throws CerebrumInvalidCursorException if the index is built and did not issue the cursor
+     */
+    @Nullable
+    public CerebrumKeysetSlice<MarketService> search(String text, Query projection, int size,
+                                                     @Nullable CerebrumCursor cursor)
+    {
+        if (index == null || text.indexOf('"') >= 0) {
+            return null;
+        }
+        List<Object> keys = cursor == null ? null : cursor.getKeys(ORDERS);
+        Set<String> required = new LinkedHashSet<>();
+        Set<String> excluded = new LinkedHashSet<>();
+        for (String word : text.split("\\s+")) {
+            if (word.startsWith("-")) {
+                excluded.addAll(tokensOf(word));
+            } else {
+                required.addAll(tokensOf(word));
+            }
+        }
+        List<Hit> hits = read(built -> built.search(required, excluded));
+        hits.sort(Comparator.comparingDouble((Hit hit) -> -hit.score).thenComparing(hit -> hit.uuid));
+
+        int from = 0;
+        if (keys != null) {
+            double score = ((Number) keys.get(0)).doubleValue();
+            String uuid = String.valueOf(keys.get(1));
+            while (from < hits.size() && (hits.get(from).score > score
+                    || hits.get(from).score == score && hits.get(from).uuid.compareTo(uuid) <= 0)) {
+                from++;
+            }
+        }
+        List<Hit> page = hits.subList(from, Math.min(from + size, hits.size()));
+        String after = null;
+        if (from + size < hits.size()) {
+            Hit last = page.get(size - 1);
+            after = new CerebrumCursor(ORDERS, List.of((double) last.score, last.uuid)).encode();
+        }
+
+        Map<String, MarketService> found = new HashMap<>();
+        Query query = Query.query(Criteria.where(UUID).in(page.stream().map(hit -> hit.uuid).toArray()));
+        projection.getFieldsObject().keySet().forEach(field -> query.fields().include(field));
+        for (MarketService service : mongoTemplate.find(query, MarketService.class)) {
+            found.put(service.getUuid(), service);
+        }
+        List<MarketService> content = new ArrayList<>(page.size());
+        for (Hit hit : page) {
+            MarketService service = found.get(hit.uuid);
+            if (service != null) {
+                content.add(service);
+            }
+        }
+        return new CerebrumKeysetSlice<>(content, PageRequest.of(0, size, Sort.by(ORDERS)), after);
+    }
+
+    private void write(Consumer<Index> write)
+    {
+        lock.writeLock().lock();
+        try {
+            if (pending != null) {
+                pending.add(write);
+            }
+            if (index != null) {
+                write.accept(index);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <R> R read(Function<Index, R> read)
+    {
+        lock.readLock().lock();
+        try {
+            return index == null ? read.apply(new Index()) : read.apply(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long estimatedSize()
+    {
+        return read(Index::estimatedSize);
+    }
+
+    private static Query indexedProperties(Query query)
+    {
+        for (String property : PROPERTIES) {
+            query.fields().include(property);
+        }
+        return query;
+    }
+
+    /* the words of the indexed properties, with the bits of the properties they occur in */
+    private static Map<String, Byte> termsOf(MarketService service)
+    {
+        Map<String, Byte> terms = new HashMap<>();
+        addTerms(terms, 0, List.of(nullToEmpty(service.getName())));
+        addTerms(terms, 1, service.getTags());
+        addTerms(terms, 2, service.getTargetGroup());
+        addTerms(terms, 3, List.of(nullToEmpty(service.getSummary())));
+        addTerms(terms, 4, List.of(nullToEmpty(service.getDescription())));
+        return terms;
+    }
+
+    private static void addTerms(Map<String, Byte> terms, int property, @Nullable Collection<String> values)
+    {
+        if (values == null) {
+            return;
+        }
+        for (String value : values) {
+            for (String token : tokensOf(value)) {
+                terms.merge(token, (byte) (1 << property), (a, b) -> (byte) (a | b));
+            }
+        }
+    }
+
+    private static String nullToEmpty(@Nullable String value)
+    {
+        return value == null ? "" : value;
+    }
+
+    /* lower-cased runs of letters and digits */
+    static Set<String> tokensOf(String text)
+    {
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Levenshtein distance of the words if it is at most {@code max},
+     * otherwise a number above {@code max}.
+     */
+    static int distance(String a, String b, int max)
+    {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static float weightOf(byte properties)
+    {
+        float weight = 0;
+        for (int property = 0; property < PROPERTIES.length; property++) {
+            if ((properties & (1 << property)) != 0) {
+                weight = Math.max(weight, WEIGHTS[property]);
+            }
+        }
+        return weight;
+    }
+
+    private static final class Hit
+    {
+        private final String uuid;
+        private final float score;
+
+        private Hit(String uuid, float score)
+        {
+            this.uuid = uuid;
+            this.score = score;
+        }
+    }
+
+    /* the document ids containing a word, ascending, and the properties it occurs in */
+    private static final class Postings
+    {
+        private int[] documents = new int[2];
+        private byte[] properties = new byte[2];
+        private int size;
+
+        void add(int document, byte property)
+        {
+            int i = Arrays.binarySearch(documents, 0, size, document);
+            if (i >= 0) {
+                properties[i] |= property;
+                return;
+            }
+            i = -i - 1;
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                properties = Arrays.copyOf(properties, size * 2);
+            }
+            System.arraycopy(documents, i, documents, i + 1, size - i);
+            System.arraycopy(properties, i, properties, i + 1, size - i);
+            documents[i] = document;
+            properties[i] = property;
+            size++;
+        }
+
+        void remove(int document)
+        {
+            int i = Arrays.binarySearch(documents, 0, size, document);
+            if (i >= 0) {
+                System.arraycopy(documents, i + 1, documents, i, size - i - 1);
+                System.arraycopy(properties, i + 1, properties, i, size - i - 1);
+                size--;
+            }
+        }
+
+        void renumber(int[] renumbered)
+        {
+            for (int i = 0; i < size; i++) {
+                documents[i] = renumbered[documents[i]];
+            }
+        }
+
+        void trim()
+        {
+            documents = Arrays.copyOf(documents, size);
+            properties = Arrays.copyOf(properties, size);
+        }
+
+        long estimatedSize()
+        {
+            return 24 + 16 + 4L * documents.length + 16 + properties.length;
+        }
+    }
+
+    private static final class Index
+    {
+        private final NavigableMap<String, Postings> terms = new TreeMap<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        /* by document id, null once the service is removed until the ids are compacted */
+        private final List<String> uuids = new ArrayList<>();
+        private final List<String[]> termsByDocument = new ArrayList<>();
+
+        void put(String uuid, Map<String, Byte> documentTerms)
+        {
+            Integer id = ids.get(uuid);
+            if (id == null) {
+                id = uuids.size();
+                ids.put(uuid, id);
+                uuids.add(uuid);
+                termsByDocument.add(null);
+            } else {
+                removeTerms(id);
+            }
+            for (Map.Entry<String, Byte> term : documentTerms.entrySet()) {
+                terms.computeIfAbsent(term.getKey(), key -> new Postings()).add(id, term.getValue());
+            }
+            termsByDocument.set(id, documentTerms.keySet().toArray(new String[0]));
+        }
+
+        void remove(String uuid)
+        {
+            Integer id = ids.remove(uuid);
+            if (id != null) {
+                removeTerms(id);
+                uuids.set(id, null);
+                termsByDocument.set(id, null);
+                if (uuids.size() - ids.size() > ids.size()) {
+                    compact();
+                }
+            }
+        }
+
+        /*
+         * numbers the services anew without the removed ones, once those are
+         * the majority; the ids keep their order, so the postings stay sorted
+         */
+        private void compact()
+        {
+            int[] renumbered = new int[uuids.size()];
+            int next = 0;
+            for (int id = 0; id < uuids.size(); id++) {
+                String uuid = uuids.get(id);
+                if (uuid != null) {
+                    renumbered[id] = next;
+                    uuids.set(next, uuid);
+                    termsByDocument.set(next, termsByDocument.get(id));
+                    ids.put(uuid, next++);
+                }
+            }
+            uuids.subList(next, uuids.size()).clear();
+            termsByDocument.subList(next, termsByDocument.size()).clear();
+            terms.values().forEach(postings -> postings.renumber(renumbered));
+        }
+
+        private void removeTerms(int id)
+        {
+            for (String term : termsByDocument.get(id)) {
+                Postings postings = terms.get(term);
+                postings.remove(id);
+                if (postings.size == 0) {
+                    terms.remove(term);
+                }
+            }
+        }
+
+        void trim()
+        {
+            terms.values().forEach(Postings::trim);
+        }
+
+        int documents()
+        {
+            return ids.size();
+        }
+
+        /*
+         * the services matching every token and containing none of the
+         * excluded ones, with the sum of the scores of their best matches
+         */
+        List<Hit> search(Collection<String> tokens, Collection<String> excluded)
+        {
+            int[] documents = null;
+            float[] scores = null;
+            int size = 0;
+            for (String token : tokens) {
+                long[] matches = match(token);
+                int[] matchedDocuments = new int[matches.length];
+                float[] matchedScores = new float[matches.length];
+                int matched = 0;
+                for (int i = 0; i < matches.length; i++) {
+                    int document = (int) (matches[i] >>> 32);
+                    float score = Float.intBitsToFloat((int) matches[i]);
+                    if (matched > 0 && matchedDocuments[matched - 1] == document) {
+                        matchedScores[matched - 1] = score;
+                    } else {
+                        matchedDocuments[matched] = document;
+                        matchedScores[matched++] = score;
+                    }
+                }
+                if (documents == null) {
+                    documents = matchedDocuments;
+                    scores = matchedScores;
+                    size = matched;
+                } else {
+                    int kept = 0;
+                    for (int i = 0, j = 0; i < size && j < matched; ) {
+                        if (documents[i] < matchedDocuments[j]) {
+                            i++;
+                        } else if (documents[i] > matchedDocuments[j]) {
+                            j++;
+                        } else {
+                            documents[kept] = documents[i];
+                            scores[kept++] = scores[i++] + matchedScores[j++];
+                        }
+                    }
+                    size = kept;
+                }
+                if (size == 0) {
+                    break;
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (!containsAny(excluded, documents[i])) {
+                    hits.add(new Hit(uuids.get(documents[i]), scores[i]));
+                }
+            }
+            return hits;
+        }
+
+        private boolean containsAny(Collection<String> tokens, int document)
+        {
+            for (String token : tokens) {
+                Postings postings = terms.get(token);
+                if (postings != null && Arrays.binarySearch(postings.documents, 0, postings.size, document) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /*
+         * the postings of the words the token matches, as document ids in the
+         * high and scores in the low halves, ascending so that the best score
+         * of a document comes last
+         */
+        private long[] match(String token)
+        {
+            Map<Postings, Float> matched = new HashMap<>();
+            Postings exact = terms.get(token);
+            if (exact != null) {
+                matched.put(exact, EXACT);
+            }
+            if (token.length() >= 2) {
+                for (Postings postings : terms.subMap(token, false, token + Character.MAX_VALUE, false).values()) {
+                    matched.putIfAbsent(postings, PREFIX);
+                }
+            }
+            int typos = Math.min(2, token.length() / 4);
+            if (typos > 0) {
+                String first = token.substring(0, 1);
+                for (Map.Entry<String, Postings> term
+                        : terms.subMap(first, true, first + Character.MAX_VALUE, false).entrySet()) {
+                    if (!matched.containsKey(term.getValue()) && distance(token, term.getKey(), typos) <= typos) {
+                        matched.put(term.getValue(), TYPO);
+                    }
+                }
+            }
+
+            int length = 0;
+            for (Postings postings : matched.keySet()) {
+                length += postings.size;
+            }
+            long[] matches = new long[length];
+            int i = 0;
+            for (Map.Entry<Postings, Float> entry : matched.entrySet()) {
+                Postings postings = entry.getKey();
+                for (int p = 0; p < postings.size; p++) {
+                    float score = entry.getValue() * weightOf(postings.properties[p]);
+                    matches[i++] = ((long) postings.documents[p] << 32) | (Float.floatToIntBits(score) & 0xFFFFFFFFL);
+                }
+            }
+            Arrays.sort(matches);
+            return matches;
+        }
+
+        /* object headers, references and arrays, assuming compressed references */
+        long estimatedSize()
+        {
+            long size = 0;
+            for (Map.Entry<String, Postings> term : terms.entrySet()) {
+                size += 40 + 40 + term.getKey().length() + term.getValue().estimatedSize();
+            }
+            for (int id = 0; id < uuids.size(); id++) {
+                size += 8;
+                String uuid = uuids.get(id);
+                if (uuid != null) {
+                    size += 40 + uuid.length() + 32 + 16 + 16 + 4L * termsByDocument.get(id).length;
+                }
+            }
+            return size;
+        }
+    }
+}
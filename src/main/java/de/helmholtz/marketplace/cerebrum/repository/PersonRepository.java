@@ -1,16 +1,11 @@
 package de.helmholtz.marketplace.cerebrum.repository;
 
-import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.repository.query.Param;
 
-import java.util.Optional;
-
 import de.helmholtz.marketplace.cerebrum.entity.Person;
 
-public interface PersonRepository extends MongoRepository<Person, String>
+public interface PersonRepository extends CerebrumRepository<Person>
 {
-    Optional<Person> findByUuid(@Param("uuid") String uuid);
-
     Person findByFirstNameAndEmail(
             @Param("firstName") String firstName, @Param("email") String email);
 
@@ -0,0 +1,154 @@
+package de.helmholtz.marketplace.cerebrum.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumBulkItemResult;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumBulkItemResult.Status;
+import de.helmholtz.marketplace.cerebrum.entity.CerebrumEntity;
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumSearchIndex;
+
+/**
+ * Imports entities from a JSON array or an NDJSON stream. Items are read one
+ * by one, validated and upserted by uuid in unordered bulk writes of
+ * {@code cerebrum.bulk.chunk-size} items, so the body is never held in memory.
+ * The services written are put into the search index as they are.
+ */
+@Service
+public class BulkImportService
+{
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final CerebrumMongoOperations mongoOperations;
+    private final CerebrumEntityCache entityCache;
+    private final CerebrumSearchIndex searchIndex;
+    private final int chunkSize;
+
+    public BulkImportService(ObjectMapper objectMapper,
+                             Validator validator,
+                             CerebrumMongoOperations mongoOperations,
+                             CerebrumEntityCache entityCache,
+                             CerebrumSearchIndex searchIndex,
+                             @Value("${cerebrum.bulk.chunk-size:1000}") int chunkSize)
+    {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.mongoOperations = mongoOperations;
+        this.entityCache = entityCache;
+        this.searchIndex = searchIndex;
+        this.chunkSize = chunkSize;
+    }
+
+    public <T extends CerebrumEntity> List<CerebrumBulkItemResult> importEntities(
+            InputStream body, Class<T> entityClass) throws IOException
+    {
+        List<CerebrumBulkItemResult> results = new ArrayList<>();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(chunkSize);
+        int index = 0;
+
+        try (MappingIterator<T> items = objectMapper.readerFor(entityClass).readValues(body)) {
+            while (true) {
+                T entity;
+                try {
+                    if (!items.hasNextValue()) {
+                        break;
+                    }
+                    entity = items.nextValue();
+                } catch (JsonParseException e) {
+                    results.add(new CerebrumBulkItemResult(index, null, Status.INVALID, Collections.singletonList(
+                            "Malformed JSON, the rest of the body was not processed: " + e.getOriginalMessage())));
+                    break;
+                } catch (JsonMappingException e) {
+                    results.add(new CerebrumBulkItemResult(
+                            index++, null, Status.INVALID, Collections.singletonList(e.getOriginalMessage())));
+                    continue;
+                }
+
+                Set<ConstraintViolation<T>> violations = validator.validate(entity);
+                if (!violations.isEmpty()) {
+                    List<String> errors = violations.stream()
+                            .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                            .collect(Collectors.toList());
+                    results.add(new CerebrumBulkItemResult(index++, entity.getUuid(), Status.INVALID, errors));
+                    continue;
+                }
+
+                chunk.add(entity);
+                chunkIndexes.add(index++);
+                if (chunk.size() == chunkSize) {
+                    write(chunk, chunkIndexes, entityClass, results);
+                    chunk.clear();
+                    chunkIndexes.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            write(chunk, chunkIndexes, entityClass, results);
+        }
+
+        results.sort(Comparator.comparingInt(CerebrumBulkItemResult::getIndex));
+        return results;
+    }
+
+    private <T extends CerebrumEntity> void write(List<T> chunk, List<Integer> chunkIndexes,
+                                                  Class<T> entityClass, List<CerebrumBulkItemResult> results)
+    {
+        BulkWriteResult result;
+        Map<Integer, String> errors = new HashMap<>();
+        try {
+            result = mongoOperations.upsertAll(chunk, entityClass);
+        } catch (BulkOperationException e) {
+            result = e.getResult();
+            for (BulkWriteError error : e.getErrors()) {
+                errors.put(error.getIndex(), error.getMessage());
+            }
+        }
+        for (T entity : chunk) {
+            entityCache.invalidate(entityClass, entity.getUuid());
+        }
+
+        Set<Integer> upserted = new HashSet<>();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+            upserted.add(upsert.getIndex());
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            String uuid = chunk.get(i).getUuid();
+            if (errors.containsKey(i)) {
+                results.add(new CerebrumBulkItemResult(
+                        chunkIndexes.get(i), uuid, Status.FAILED, Collections.singletonList(errors.get(i))));
+            } else {
+                if (chunk.get(i) instanceof MarketService) {
+                    searchIndex.put((MarketService) chunk.get(i));
+                }
+                results.add(new CerebrumBulkItemResult(chunkIndexes.get(i), uuid,
+                        upserted.contains(i) ? Status.CREATED : Status.UPDATED, Collections.emptyList()));
+            }
+        }
+    }
+}
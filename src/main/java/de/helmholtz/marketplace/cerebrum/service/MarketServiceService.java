@@ -1,43 +1,108 @@
 package de.helmholtz.marketplace.cerebrum.service;
 
 import com.github.fge.jsonpatch.JsonPatch;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.List;
+import java.util.function.Supplier;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperation;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperationResult;
 import de.helmholtz.marketplace.cerebrum.entity.MarketService;
 import de.helmholtz.marketplace.cerebrum.entity.Organization;
 import de.helmholtz.marketplace.cerebrum.entity.Person;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCursor;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumProjector;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumReferenceLoader;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumSearchIndex;
 import de.helmholtz.marketplace.cerebrum.repository.MarketServiceRepository;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
 import de.helmholtz.marketplace.cerebrum.service.common.CerebrumServiceBase;
 
 @Service
 public class MarketServiceService extends CerebrumServiceBase<MarketService, MarketServiceRepository>
 {
+    private static final List<String> SEARCH_FIELDS = List.of("name", "summary", "tags");
+
     private final MarketServiceRepository marketServiceRepository;
-    private final OrganizationService organizationService;
-    private final PersonService personService;
+    private final CerebrumMongoOperations mongoOperations;
+    private final CerebrumReferenceLoader referenceLoader;
+    private final CerebrumProjector projector;
+    private final CerebrumSearchIndex searchIndex;
 
     public MarketServiceService(MarketServiceRepository marketServiceRepository,
-                                OrganizationService organizationService,
-                                PersonService personService)
+                                CerebrumMongoOperations mongoOperations,
+                                CerebrumReferenceLoader referenceLoader,
+                                CerebrumProjector projector,
+                                CerebrumSearchIndex searchIndex,
+                                CerebrumEntityCache entityCache,
+                                CerebrumPatchEngine patchEngine)
     {
-        super(MarketService.class, MarketServiceRepository.class);
+        super(MarketService.class, entityCache, patchEngine);
         this.marketServiceRepository = marketServiceRepository;
-        this.organizationService = organizationService;
-        this.personService = personService;
+        this.mongoOperations = mongoOperations;
+        this.referenceLoader = referenceLoader;
+        this.projector = projector;
+        this.searchIndex = searchIndex;
+        registerFinder("name", MarketServiceRepository::findByName);
+        registerFinder("entryPoint", MarketServiceRepository::findByEntryPoint);
+    }
+
+    public Slice<MarketService> getServices(
+            PageRequest page, CerebrumCountMode count, List<String> fields, List<String> expand)
+    {
+        Query projection = projector.project(new Query(), MarketService.class, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> getAllEntities(page, count, projection, marketServiceRepository, mongoOperations),
+                MarketService.class, expand), fields);
+    }
+
+    public CerebrumKeysetSlice<MarketService> getServices(
+            Sort sort, int size, String after, List<String> fields, List<String> expand)
+    {
+        Query projection = projector.project(new Query(), MarketService.class, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> getAllEntities(sort, size, after, projection, mongoOperations),
+                MarketService.class, expand), fields);
     }
 
-    public Page<MarketService> getServices(PageRequest page)
+    /**
+     * Returns the page of services matching the text that follows the
+     * {@code after} cursor, most relevant first. Without fields, only the
+     * name, summary and tags are returned. The in-memory search index is used
+     * once it is built, the text index of the database otherwise and for
+     * queries quoting a phrase.
+     */
+    public CerebrumKeysetSlice<MarketService> searchServices(
+            String text, int size, String after, List<String> fields)
     {
-        return getAllEntities(page, marketServiceRepository);
+        List<String> selected = fields == null || fields.isEmpty() ? SEARCH_FIELDS : fields;
+        Query projection = projector.project(new Query(), MarketService.class, selected);
+        CerebrumCursor cursor = CerebrumCursor.decode(after);
+        return projector.restrict(referenceLoader.load(() -> {
+            CerebrumKeysetSlice<MarketService> indexed = searchIndex.search(text, projection, size, cursor);
+            return indexed != null
+                    ? indexed
+                    : mongoOperations.search(text, projection, size, cursor, MarketService.class);
+        }, MarketService.class, null), selected);
     }
 
-    public MarketService getService(String uuid)
+    public MarketService getService(String uuid, List<String> fields, List<String> expand)
     {
-        return getEntity(uuid, marketServiceRepository);
+        Query projection = projector.project(new Query(), MarketService.class, fields);
+        return projector.restrictOne(referenceLoader.loadOne(
+                () -> getEntity(uuid, projection, marketServiceRepository, mongoOperations),
+                MarketService.class, expand), fields);
     }
 
     public MarketService getServiceByAttributes(String attr, String value)
@@ -48,23 +113,33 @@ public class MarketServiceService extends CerebrumServiceBase<MarketService, Mar
     public ResponseEntity<MarketService> createService(
             MarketService entity, UriComponentsBuilder uriComponentsBuilder)
     {
-        return createEntity(entity, marketServiceRepository, uriComponentsBuilder);
+        return indexed(createEntity(entity, marketServiceRepository, uriComponentsBuilder));
     }
 
     public ResponseEntity<MarketService> updateService(
             String uuid, MarketService entity, UriComponentsBuilder uriComponentsBuilder)
     {
-        return updateEntity(uuid, entity, marketServiceRepository, uriComponentsBuilder);
+        return indexed(updateEntity(uuid, entity, marketServiceRepository, uriComponentsBuilder));
     }
 
     public ResponseEntity<MarketService> partiallyUpdateService(String uuid, JsonPatch patch)
     {
-        return partiallyUpdateEntity(uuid, marketServiceRepository, patch);
+        return indexed(partiallyUpdateEntity(uuid, marketServiceRepository, patch));
     }
 
     public ResponseEntity<MarketService> deleteService(String uuid)
     {
-        return deleteEntity(uuid, marketServiceRepository);
+        ResponseEntity<MarketService> response = deleteEntity(uuid, marketServiceRepository);
+        searchIndex.remove(uuid);
+        return response;
+    }
+
+    private ResponseEntity<MarketService> indexed(ResponseEntity<MarketService> response)
+    {
+        if (response.getBody() != null) {
+            searchIndex.put(response.getBody());
+        }
+        return response;
     }
 
     //service-provider
@@ -80,24 +155,14 @@ public class MarketServiceService extends CerebrumServiceBase<MarketService, Mar
 
     private ResponseEntity<MarketService> provider(String serviceUuid, String providerUuid, boolean toAdd)
     {
-        MarketService service = getService(serviceUuid);
-        Organization provider = organizationService.getOrganization(providerUuid);
-
-        if (service.getServiceProviders() != null) {
-            for (Organization sp: service.getServiceProviders()) {
-                if (sp.getUuid().equals(providerUuid)) {
-                    return ResponseEntity.noContent().build();
-                }
-            }
-        }
+        return updateReference(serviceUuid, "serviceProviders", Organization.class, providerUuid, toAdd,
+                mongoOperations);
+    }
 
-        if (toAdd) {
-            service.addProvider(provider);
-        } else {
-            service.removeProvider(provider);
-        }
-        MarketService updatedService = marketServiceRepository.save(service);
-        return ResponseEntity.ok().body(updatedService);
+    public ResponseEntity<List<CerebrumReferenceOperationResult>> updateProviders(
+            String serviceUuid, List<CerebrumReferenceOperation> operations)
+    {
+        return updateReferences(serviceUuid, "serviceProviders", Organization.class, operations, mongoOperations);
     }
 
     //Service Management Team
@@ -113,23 +178,19 @@ public class MarketServiceService extends CerebrumServiceBase<MarketService, Mar
 
     private ResponseEntity<MarketService> teamMember(String serviceUuid, String personUuid, boolean toAdd)
     {
-        MarketService service = getService(serviceUuid);
-        Person teamMember = personService.getPerson(personUuid);
+        return updateReference(serviceUuid, "managementTeam", Person.class, personUuid, toAdd,
+                mongoOperations);
+    }
 
-        if (service.getManagementTeam() != null) {
-            for (Person tm: service.getManagementTeam()) {
-                if (tm.getUuid().equals(personUuid)) {
-                    return ResponseEntity.noContent().build();
-                }
-            }
-        }
+    public ResponseEntity<List<CerebrumReferenceOperationResult>> updateTeamMembers(
+            String serviceUuid, List<CerebrumReferenceOperation> operations)
+    {
+        return updateReferences(serviceUuid, "managementTeam", Person.class, operations, mongoOperations);
+    }
 
-        if (toAdd) {
-            service.addTeamMember(teamMember);
-        } else {
-            service.removeTeamMember(teamMember);
-        }
-        MarketService updatedService = marketServiceRepository.save(service);
-        return ResponseEntity.ok().body(updatedService);
+    @Override
+    protected MarketService loadWritten(Supplier<MarketService> write)
+    {
+        return referenceLoader.loadOne(write, MarketService.class, null);
     }
 }
@@ -1,46 +1,129 @@
 package de.helmholtz.marketplace.cerebrum.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jsonpatch.JsonPatch;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.ResponseEntity;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperation;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperationResult;
 import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
 import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumProjector;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumReferenceLoader;
 import de.helmholtz.marketplace.cerebrum.repository.MarketUserRepository;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
 import de.helmholtz.marketplace.cerebrum.service.common.CerebrumServiceBase;
 
 @Service
 public class MarketUserService extends CerebrumServiceBase<MarketUser, MarketUserRepository>
 {
     private final MarketUserRepository marketUserRepository;
-    private final OrganizationService organizationService;
+    private final CerebrumMongoOperations mongoOperations;
+    private final CerebrumReferenceLoader referenceLoader;
+    private final CerebrumProjector projector;
 
     public MarketUserService(MarketUserRepository marketUserRepository,
-                             OrganizationService organizationService)
+                             CerebrumMongoOperations mongoOperations,
+                             CerebrumReferenceLoader referenceLoader,
+                             CerebrumProjector projector,
+                             CerebrumEntityCache entityCache,
+                             CerebrumPatchEngine patchEngine)
     {
-        super(MarketUser.class, MarketUserRepository.class);
+        super(MarketUser.class, entityCache, patchEngine);
         this.marketUserRepository = marketUserRepository;
-        this.organizationService = organizationService;
+        this.mongoOperations = mongoOperations;
+        this.referenceLoader = referenceLoader;
+        this.projector = projector;
+        registerFinder("sub", (repository, sub) -> Optional.ofNullable(repository.findBySub(sub)));
+        registerFinder("screenName", MarketUserRepository::findByScreenName);
+    }
+
+    public Slice<MarketUser> getUsers(
+            PageRequest page, CerebrumCountMode count, List<String> fields, List<String> expand)
+    {
+        Query projection = projector.project(new Query(), MarketUser.class, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> getAllEntities(page, count, projection, marketUserRepository, mongoOperations),
+                MarketUser.class, expand), fields);
+    }
+
+    public CerebrumKeysetSlice<MarketUser> getUsers(
+            Sort sort, int size, String after, List<String> fields, List<String> expand)
+    {
+        Query projection = projector.project(new Query(), MarketUser.class, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> getAllEntities(sort, size, after, projection, mongoOperations),
+                MarketUser.class, expand), fields);
+    }
+
+    public MarketUser getUser(String uuid, List<String> fields, List<String> expand)
+    {
+        Query projection = projector.project(new Query(), MarketUser.class, fields);
+        return projector.restrictOne(referenceLoader.loadOne(
+                () -> getEntity(uuid, projection, marketUserRepository, mongoOperations),
+                MarketUser.class, expand), fields);
     }
 
-    public Page<MarketUser> getUsers(PageRequest page)
+    @Nullable
+    public MarketUser getUserBySub(String sub)
     {
-        return getAllEntities(page, marketUserRepository);
+        return referenceLoader.loadOne(() -> marketUserRepository.findBySub(sub), MarketUser.class, null);
     }
 
-    public MarketUser getUser(String uuid)
+    /**
+     * Returns the user with the given sub, creating it on the first login
+     * together with its profile, or linking it to the person of that name if
+     * there is one. It takes two atomic operations, whether the user is new
+     * or not. The profile is found or inserted first, so the user never
+     * refers to a person that does not exist; a new profile takes a uuid
+     * derived from the sub, so concurrent first logins collide on its id
+     * instead of inserting two persons. The user is then found or inserted
+     * on the unique sub index, so they end up with a single user as well.
+     * Both uuids are derived from the sub rather than generated, as they are
+     * only needed when a document is inserted.
+     */
+    public MarketUser provisionUser(String sub, String firstName, String lastName, @Nullable String email)
     {
-        return getEntity(uuid, marketUserRepository);
+        String profileUuid = uuidOf("prn", sub);
+        Person profile = mongoOperations.findOrInsert(
+                Query.query(new Criteria().orOperator(
+                        Criteria.where("uuid").is(profileUuid),
+                        Criteria.where("firstName").is(firstName).and("lastName").is(lastName))),
+                new Update().setOnInsert("uuid", profileUuid)
+                        .setOnInsert("firstName", firstName)
+                        .setOnInsert("lastName", lastName)
+                        .setOnInsert("emails", email == null ? List.of() : List.of(email)),
+                Person.class);
+        return referenceLoader.loadOne(() -> mongoOperations.findOrInsert(
+                Query.query(Criteria.where("sub").is(sub)),
+                new Update().setOnInsert("uuid", uuidOf("usr", sub))
+                        .setOnInsert("profile", mongoOperations.referenceTo(profile.getUuid(), Person.class)),
+                MarketUser.class), MarketUser.class, null);
     }
 
-    public MarketUser getUser(JsonNode user)
+    /* the same for every login of a sub, and a valid, name-based uuid */
+    static String uuidOf(String prefix, String sub)
     {
-        //sub
-        return marketUserRepository.findBySub(user.get("sub").asText());
+        return prefix + "-" + UUID.nameUUIDFromBytes((prefix + ":" + sub).getBytes(StandardCharsets.UTF_8));
     }
 
     public MarketUser getUserByAttributes(String attr, String value)
@@ -88,21 +171,19 @@ public class MarketUserService extends CerebrumServiceBase<MarketUser, MarketUse
 
     private ResponseEntity<MarketUser> affiliation(String userUuid, String affiliationUuid, boolean toAdd)
     {
-        MarketUser user = getUser(userUuid);
-        Organization affiliate = organizationService.getOrganization(affiliationUuid);
-        if (user.getAffiliations() != null) {
-            for (Organization a : user.getAffiliations()) {
-                if (a.getUuid().equals(affiliationUuid)) {
-                    return ResponseEntity.noContent().build();
-                }
-            }
-        }
-        if (toAdd) {
-            user.addAffiliation(affiliate);
-        } else {
-            user.removeAffiliation(affiliate);
-        }
-        MarketUser updatedUser = marketUserRepository.save(user);
-        return ResponseEntity.ok().body(updatedUser);
+        return updateReference(userUuid, "affiliations", Organization.class, affiliationUuid, toAdd,
+                mongoOperations);
+    }
+
+    public ResponseEntity<List<CerebrumReferenceOperationResult>> updateAffiliations(
+            String userUuid, List<CerebrumReferenceOperation> operations)
+    {
+        return updateReferences(userUuid, "affiliations", Organization.class, operations, mongoOperations);
+    }
+
+    @Override
+    protected MarketUser loadWritten(Supplier<MarketUser> write)
+    {
+        return referenceLoader.loadOne(write, MarketUser.class, null);
     }
 }
@@ -1,18 +1,31 @@
 package de.helmholtz.marketplace.cerebrum.service;
 
 import com.github.fge.jsonpatch.JsonPatch;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.List;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
 import de.helmholtz.marketplace.cerebrum.entity.MarketService;
 import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
 import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCursor;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumProjector;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumReferenceLoader;
 import de.helmholtz.marketplace.cerebrum.repository.MarketServiceRepository;
 import de.helmholtz.marketplace.cerebrum.repository.MarketUserRepository;
 import de.helmholtz.marketplace.cerebrum.repository.OrganizationRepository;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
 import de.helmholtz.marketplace.cerebrum.service.common.CerebrumServiceBase;
 
 @Service
@@ -21,25 +34,47 @@ public class OrganizationService extends CerebrumServiceBase<Organization, Organ
     private final OrganizationRepository organizationRepository;
     private final MarketUserRepository marketUserRepository;
     private final MarketServiceRepository marketServiceRepository;
+    private final CerebrumMongoOperations mongoOperations;
+    private final CerebrumReferenceLoader referenceLoader;
+    private final CerebrumProjector projector;
 
     public OrganizationService(OrganizationRepository organizationRepository,
                                MarketUserRepository marketUserRepository,
-                               MarketServiceRepository marketServiceRepository)
+                               MarketServiceRepository marketServiceRepository,
+                               CerebrumMongoOperations mongoOperations,
+                               CerebrumReferenceLoader referenceLoader,
+                               CerebrumProjector projector,
+                               CerebrumEntityCache entityCache,
+                               CerebrumPatchEngine patchEngine)
     {
-        super(Organization.class, OrganizationRepository.class);
+        super(Organization.class, entityCache, patchEngine);
         this.organizationRepository = organizationRepository;
         this.marketUserRepository = marketUserRepository;
         this.marketServiceRepository = marketServiceRepository;
+        this.mongoOperations = mongoOperations;
+        this.referenceLoader = referenceLoader;
+        this.projector = projector;
     }
 
-    public Page<Organization> getOrganizations(PageRequest page)
+    public Slice<Organization> getOrganizations(PageRequest page, CerebrumCountMode count, List<String> fields)
     {
-        return getAllEntities(page, organizationRepository);
+        Query projection = projector.project(new Query(), Organization.class, fields);
+        return projector.restrict(
+                getAllEntities(page, count, projection, organizationRepository, mongoOperations), fields);
     }
 
-    public Organization getOrganization(String uuid)
+    public CerebrumKeysetSlice<Organization> getOrganizations(
+            Sort sort, int size, String after, List<String> fields)
     {
-        return getEntity(uuid, organizationRepository);
+        Query projection = projector.project(new Query(), Organization.class, fields);
+        return projector.restrict(getAllEntities(sort, size, after, projection, mongoOperations), fields);
+    }
+
+    public Organization getOrganization(String uuid, List<String> fields)
+    {
+        Query projection = projector.project(new Query(), Organization.class, fields);
+        return projector.restrictOne(
+                getEntity(uuid, projection, organizationRepository, mongoOperations), fields);
     }
 
     public Organization getOrganizationByAttributes(String attr, String value)
@@ -69,13 +104,67 @@ public class OrganizationService extends CerebrumServiceBase<Organization, Organ
         return deleteEntity(uuid, organizationRepository);
     }
 
-    public Page<MarketService> getHostedServices(String uuid, PageRequest page)
+    public Slice<MarketService> getHostedServices(String uuid, PageRequest page, CerebrumCountMode count,
+                                                  List<String> fields, List<String> expand)
+    {
+        Query query = hostedServicesQuery(uuid, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> count == CerebrumCountMode.EXACT && isEmpty(fields)
+                        ? marketServiceRepository.findByServiceProvidersUsingUuid(uuid,  page)
+                        : mongoOperations.findPage(query, page, count, MarketService.class),
+                MarketService.class, expand), fields);
+    }
+
+    public CerebrumKeysetSlice<MarketService> getHostedServices(String uuid, Sort sort, int size, String after,
+                                                                List<String> fields, List<String> expand)
+    {
+        Query query = hostedServicesQuery(uuid, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> mongoOperations.findSlice(query, sort, size, CerebrumCursor.decode(after), MarketService.class),
+                MarketService.class, expand), fields);
+    }
+
+    public Slice<MarketUser> listKnownMembers(String uuid, PageRequest page, CerebrumCountMode count,
+                                              List<String> fields, List<String> expand)
+    {
+        Query query = membersQuery(uuid, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> count == CerebrumCountMode.EXACT && isEmpty(fields)
+                        ? marketUserRepository.findAllMembers(uuid,  page)
+                        : mongoOperations.findPage(query, page, count, MarketUser.class),
+                MarketUser.class, expand), fields);
+    }
+
+    public CerebrumKeysetSlice<MarketUser> listKnownMembers(String uuid, Sort sort, int size, String after,
+                                                            List<String> fields, List<String> expand)
+    {
+        Query query = membersQuery(uuid, fields);
+        return projector.restrict(referenceLoader.load(
+                () -> mongoOperations.findSlice(query, sort, size, CerebrumCursor.decode(after), MarketUser.class),
+                MarketUser.class, expand), fields);
+    }
+
+    /* same filters and projections as the repository queries, unless fields are selected */
+    private Query hostedServicesQuery(String uuid, List<String> fields)
+    {
+        Query query = Query.query(Criteria.where("serviceProviders.$id").is(uuid));
+        if (isEmpty(fields)) {
+            query.fields().exclude("serviceProviders");
+        }
+        return projector.project(query, MarketService.class, fields);
+    }
+
+    private Query membersQuery(String uuid, List<String> fields)
     {
-        return marketServiceRepository.findByServiceProvidersUsingUuid(uuid,  page);
+        Query query = Query.query(Criteria.where("affiliations.$id").is(uuid));
+        if (isEmpty(fields)) {
+            query.fields().exclude("affiliations");
+        }
+        return projector.project(query, MarketUser.class, fields);
     }
 
-    public Page<MarketUser> listKnownMembers(String uuid, PageRequest page)
+    private static boolean isEmpty(List<String> fields)
     {
-        return marketUserRepository.findAllMembers(uuid,  page);
+        return fields == null || fields.isEmpty();
     }
 }
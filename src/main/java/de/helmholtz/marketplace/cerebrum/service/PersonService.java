@@ -3,7 +3,9 @@ package de.helmholtz.marketplace.cerebrum.service;
 import org.springframework.stereotype.Service;
 
 import de.helmholtz.marketplace.cerebrum.entity.Person;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
 import de.helmholtz.marketplace.cerebrum.repository.PersonRepository;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
 import de.helmholtz.marketplace.cerebrum.service.common.CerebrumServiceBase;
 
 @Service
@@ -11,9 +13,11 @@ public class PersonService extends CerebrumServiceBase<Person, PersonRepository>
 {
     private final PersonRepository personRepository;
 
-    protected PersonService(PersonRepository personRepository)
+    protected PersonService(PersonRepository personRepository,
+                            CerebrumEntityCache entityCache,
+                            CerebrumPatchEngine patchEngine)
     {
-        super(Person.class, PersonRepository.class);
+        super(Person.class, entityCache, patchEngine);
         this.personRepository = personRepository;
     }
 
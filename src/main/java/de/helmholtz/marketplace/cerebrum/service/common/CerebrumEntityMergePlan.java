@@ -0,0 +1,73 @@
+package de.helmholtz.marketplace.cerebrum.service.common;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies the non-null private fields declared by an entity class from one
+ * instance onto another. The field accessors are resolved once, when the plan
+ * is built, so merging does no reflective look up per request.
+ */
+final class CerebrumEntityMergePlan<T>
+{
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final MethodHandle[] getters;
+    private final MethodHandle[] setters;
+
+    private CerebrumEntityMergePlan(MethodHandle[] getters, MethodHandle[] setters)
+    {
+        this.getters = getters;
+        this.setters = setters;
+    }
+
+    static <T> CerebrumEntityMergePlan<T> of(Class<T> entityClass)
+    {
+        List<MethodHandle> getters = new ArrayList<>();
+        List<MethodHandle> setters = new ArrayList<>();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(entityClass, MethodHandles.lookup());
+            for (Field field : entityClass.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isPrivate(modifiers) && !Modifier.isStatic(modifiers) && !field.isSynthetic()) {
+                    getters.add(lookup.unreflectGetter(field).asType(GETTER_TYPE));
+                    setters.add(lookup.unreflectSetter(field).asType(SETTER_TYPE));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "Due to lack of accessibility, the fields of "
+                            + entityClass.getSimpleName() + " cannot be merged", e);
+        }
+        return new CerebrumEntityMergePlan<>(
+                getters.toArray(new MethodHandle[0]), setters.toArray(new MethodHandle[0]));
+    }
+
+    /**
+     * Sets every field of {@code target} for which {@code source} holds a non-null value.
+     */
+    void merge(T source, T target)
+    {
+        try {
+            for (int i = 0; i < getters.length; i++) {
+                Object value = (Object) getters[i].invokeExact((Object) source);
+                if (value != null) {
+                    setters[i].invokeExact((Object) target, value);
+                }
+            }
+        } catch (Throwable e) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR, "the submitted entity cannot be merged", e);
+        }
+    }
+}
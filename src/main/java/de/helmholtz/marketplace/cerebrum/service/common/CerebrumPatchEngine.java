@@ -0,0 +1,168 @@
+package de.helmholtz.marketplace.cerebrum.service.common;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidPatchException;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchTranslator.CerebrumPatchUpdate;
+
+/**
+ * Applies JSON Patch documents to entities with the application's ObjectMapper.
+ *
+ * Patches made only of add/replace operations on top-level scalar properties
+ * are written straight onto the entity, as long as every replaced property
+ * holds a value. Any other patch is applied to the entity's JSON tree, which
+ * is then read back into a new instance. A patch that cannot be applied is
+ * rejected with a {@link CerebrumInvalidPatchException}.
+ *
+ * Where a patch can be expressed as a MongoDB update, it can also be applied
+ * atomically in the database without loading the entity first.
+ */
+@Component
+public class CerebrumPatchEngine
+{
+    private final ObjectMapper objectMapper;
+    private final MongoMappingContext mappingContext;
+    private final CerebrumMongoOperations mongoOperations;
+    private final Map<Class<?>, PatchTarget> targets = new ConcurrentHashMap<>();
+    private final Map<Class<?>, CerebrumPatchTranslator> translators = new ConcurrentHashMap<>();
+
+    public CerebrumPatchEngine(ObjectMapper objectMapper,
+                               MongoMappingContext mappingContext,
+                               CerebrumMongoOperations mongoOperations)
+    {
+        this.objectMapper = objectMapper;
+        this.mappingContext = mappingContext;
+        this.mongoOperations = mongoOperations;
+    }
+
+    /**
+     * Applies the patch as a single update to the stored entity.
+     *
+     * @return the patched entity, or an empty optional if the patch has no
+     * update equivalent or the entity did not match (missing, or a test
+     * operation failed); the caller then has to patch the loaded entity
+     */
+    public <T> Optional<T> patchAtomically(String uuid, JsonPatch patch, Class<T> clazz)
+    {
+        CerebrumPatchTranslator translator = translators.computeIfAbsent(clazz,
+                c -> new CerebrumPatchTranslator(mappingContext.getRequiredPersistentEntity(c), objectMapper));
+        CerebrumPatchUpdate patchUpdate = translator.translate(objectMapper.valueToTree(patch));
+        if (patchUpdate == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(
+                mongoOperations.updateByUuid(uuid, patchUpdate.guard, patchUpdate.update, clazz));
+    }
+
+    public <T> T applyPatch(JsonPatch patch, T target, Class<T> clazz)
+    {
+        PatchTarget patchTarget = targets.computeIfAbsent(clazz, this::createTarget);
+        try {
+            JsonNode operations = objectMapper.valueToTree(patch);
+            ObjectNode scalarValues = patchTarget.collectScalarValues(operations, target);
+            if (scalarValues != null) {
+                return patchTarget.reader.withValueToUpdate(target).readValue(scalarValues);
+            }
+
+            TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+            patchTarget.writer.writeValue(buffer, target);
+            JsonNode patched = patch.apply(objectMapper.readTree(buffer.asParser()));
+            return patchTarget.reader.readValue(patched);
+        } catch (JsonPatchException | JsonProcessingException e) {
+            throw new CerebrumInvalidPatchException(e.getLocalizedMessage());
+        } catch (IOException e) {
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR,  e.getLocalizedMessage());
+        }
+    }
+
+    private PatchTarget createTarget(Class<?> clazz)
+    {
+        JavaType type = objectMapper.constructType(clazz);
+        BeanDescription description = objectMapper.getDeserializationConfig().introspect(type);
+        Map<String, AnnotatedMember> scalarProperties = new HashMap<>();
+        for (BeanPropertyDefinition property : description.findProperties()) {
+            if (property.couldSerialize() && property.couldDeserialize()
+                    && isScalar(property.getPrimaryType())) {
+                AnnotatedMember accessor = property.getAccessor();
+                accessor.fixAccess(true);
+                scalarProperties.put(property.getName(), accessor);
+            }
+        }
+        return new PatchTarget(objectMapper.readerFor(type), objectMapper.writerFor(type), scalarProperties);
+    }
+
+    private static boolean isScalar(JavaType type)
+    {
+        Class<?> raw = type.getRawClass();
+        return type.isPrimitive() || type.isEnumType()
+                || CharSequence.class.isAssignableFrom(raw)
+                || Number.class.isAssignableFrom(raw)
+                || raw == Boolean.class || raw == Character.class;
+    }
+
+    private final class PatchTarget
+    {
+        private final ObjectReader reader;
+        private final ObjectWriter writer;
+        private final Map<String, AnnotatedMember> scalarProperties;
+
+        private PatchTarget(ObjectReader reader, ObjectWriter writer, Map<String, AnnotatedMember> scalarProperties)
+        {
+            this.reader = reader;
+            this.writer = writer;
+            this.scalarProperties = scalarProperties;
+        }
+
+        /**
+         * Returns the values set by the patch, keyed by property name, or null
+         * when the patch does anything other than set top-level scalars. A
+         * replace of an unset property is left to the JSON tree, where it
+         * fails if the property is not serialized.
+         */
+        private ObjectNode collectScalarValues(JsonNode operations, Object target)
+        {
+            ObjectNode values = objectMapper.createObjectNode();
+            for (JsonNode operation : operations) {
+                String op = operation.path("op").asText();
+                String path = operation.path("path").asText();
+                JsonNode value = operation.get("value");
+                if (!("replace".equals(op) || "add".equals(op))
+                        || value == null || !value.isValueNode()
+                        || path.length() < 2 || path.charAt(0) != '/'
+                        || path.indexOf('/', 1) != -1 || path.indexOf('~') != -1) {
+                    return null;
+                }
+                String property = path.substring(1);
+                AnnotatedMember accessor = scalarProperties.get(property);
+                if (accessor == null || "replace".equals(op) && accessor.getValue(target) == null) {
+                    return null;
+                }
+                values.set(property, value);
+            }
+            return values.size() > 0 ? values : null;
+        }
+    }
+}
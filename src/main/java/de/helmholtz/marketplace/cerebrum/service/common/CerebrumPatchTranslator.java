@@ -0,0 +1,290 @@
+package de.helmholtz.marketplace.cerebrum.service.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles JSON Patch documents into a single MongoDB update for one entity class.
+ *
+ * Supported are add, replace, remove and test on top-level properties, add on
+ * "/property/-" of a collection, and a test directly followed by a remove of
+ * the same element of a set, which becomes a pull of the tested value guarded
+ * on its position. A replace or remove is guarded on the property being
+ * stored.
+ * Identifiers, references, audit fields and properties whose setter does not
+ * store the given value as is (Organization upper-cases its abbreviation) are
+ * never translated. For those, and for patches applying different operators
+ * to one property, null is returned so that the caller patches the loaded
+ * entity instead.
+ */
+final class CerebrumPatchTranslator
+{
+    private enum Operator { SET, UNSET, ADD, PULL }
+
+    private final Map<String, PatchField> fields = new HashMap<>();
+    private final String lastModifiedField;
+
+    CerebrumPatchTranslator(MongoPersistentEntity<?> entity, ObjectMapper objectMapper)
+    {
+        TypeFactory typeFactory = objectMapper.getTypeFactory();
+        Object probe = BeanUtils.instantiateClass(entity.getType());
+        for (MongoPersistentProperty property : entity) {
+            if (property.isIdProperty() || property.isAssociation() || property.isEntity()
+                    || property.getField() == null
+                    || property.isAnnotationPresent(CreatedDate.class)
+                    || property.isAnnotationPresent(LastModifiedDate.class)
+                    || property.isAnnotationPresent(Version.class)) {
+                continue;
+            }
+            ObjectReader reader =
+                    objectMapper.readerFor(typeFactory.constructType(property.getField().getGenericType()));
+            if (!storesValueAsGiven(property, reader, probe)) {
+                continue;
+            }
+            ObjectReader elementReader = property.isCollectionLike()
+                    ? objectMapper.readerFor(typeFactory.constructType(property.getActualType()))
+                    : null;
+            fields.put(property.getName(), new PatchField(
+                    property.getFieldName(),
+                    reader,
+                    elementReader,
+                    Set.class.isAssignableFrom(property.getType())));
+        }
+        MongoPersistentProperty lastModified = entity.getPersistentProperty(LastModifiedDate.class);
+        this.lastModifiedField = lastModified != null && lastModified.getType() == long.class
+                ? lastModified.getFieldName() : null;
+    }
+
+    /**
+     * Returns the update for the given patch operations, or null if the patch
+     * cannot be expressed as one.
+     */
+    @Nullable
+    CerebrumPatchUpdate translate(JsonNode operations)
+    {
+        Map<PatchField, Operator> operators = new HashMap<>();
+        Map<PatchField, Object> values = new LinkedHashMap<>();
+        Map<PatchField, List<Object>> elements = new LinkedHashMap<>();
+        List<Criteria> guards = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                JsonNode operation = operations.get(i);
+                String op = operation.path("op").asText();
+                String path = operation.path("path").asText();
+                JsonNode value = operation.get("value");
+                String[] segments = splitPath(path);
+                PatchField field = segments == null ? null : fields.get(segments[0]);
+                if (field == null) {
+                    return null;
+                }
+
+                if (segments.length == 1) {
+                    if ("test".equals(op) && value != null) {
+                        guards.add(Criteria.where(field.name).is(field.reader.readValue(value)));
+                    } else if (("add".equals(op) || "replace".equals(op)) && value != null
+                            && claim(operators, field, Operator.SET)) {
+                        values.put(field, field.reader.readValue(value));
+                        if ("replace".equals(op)) {
+                            guards.add(Criteria.where(field.name).exists(true));
+                        }
+                    } else if ("remove".equals(op) && claim(operators, field, Operator.UNSET)) {
+                        guards.add(Criteria.where(field.name).exists(true));
+                    } else {
+                        return null;
+                    }
+                } else if (field.elementReader != null && value != null) {
+                    if ("add".equals(op) && "-".equals(segments[1])
+                            && claim(operators, field, Operator.ADD)) {
+                        elements.computeIfAbsent(field, f -> new ArrayList<>())
+                                .add(field.elementReader.readValue(value));
+                    } else if ("test".equals(op) && field.set && isIndex(segments[1])
+                            && i + 1 < operations.size()
+                            && isRemoveOf(operations.get(i + 1), path)
+                            && claim(operators, field, Operator.PULL)) {
+                        Object element = field.elementReader.readValue(value);
+                        elements.computeIfAbsent(field, f -> new ArrayList<>()).add(element);
+                        guards.add(Criteria.where(field.name + "." + segments[1]).is(element));
+                        i++;
+                    } else {
+                        return null;
+                    }
+                } else {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        if (operators.isEmpty()) {
+            return null;
+        }
+
+        Update update = new Update();
+        for (Map.Entry<PatchField, Operator> entry : operators.entrySet()) {
+            PatchField field = entry.getKey();
+            switch (entry.getValue()) {
+                case SET:
+                    update.set(field.name, values.get(field));
+                    break;
+                case UNSET:
+                    update.unset(field.name);
+                    break;
+                case ADD:
+                    if (field.set) {
+                        update.addToSet(field.name).each(elements.get(field).toArray());
+                    } else {
+                        update.push(field.name).each(elements.get(field).toArray());
+                    }
+                    break;
+                case PULL:
+                    update.pullAll(field.name, elements.get(field).toArray());
+                    break;
+            }
+        }
+        if (lastModifiedField != null) {
+            update.set(lastModifiedField, System.currentTimeMillis());
+        }
+
+        Criteria guard = null;
+        if (guards.size() == 1) {
+            guard = guards.get(0);
+        } else if (guards.size() > 1) {
+            guard = new Criteria().andOperator(guards.toArray(new Criteria[0]));
+        }
+        return new CerebrumPatchUpdate(update, guard);
+    }
+
+    private static boolean claim(Map<PatchField, Operator> operators, PatchField field, Operator operator)
+    {
+        Operator claimed = operators.putIfAbsent(field, operator);
+        return claimed == null || claimed == operator;
+    }
+
+    /**
+     * Tells whether the setter of the property keeps a probe value unchanged,
+     * so that writing the patched value directly has the same effect.
+     */
+    private static boolean storesValueAsGiven(MongoPersistentProperty property, ObjectReader reader, Object probe)
+    {
+        Method setter = property.getSetter();
+        if (setter == null) {
+            return true;
+        }
+        JsonNode probeNode = property.isCollectionLike()
+                ? probeNode(property.getActualType(), reader) : probeNode(property.getType(), reader);
+        if (probeNode == null) {
+            return false;
+        }
+        if (property.isCollectionLike()) {
+            probeNode = JsonNodeFactory.instance.arrayNode().add(probeNode);
+        }
+        try {
+            Object value = reader.readValue(probeNode);
+            ReflectionUtils.makeAccessible(setter);
+            ReflectionUtils.makeAccessible(property.getField());
+            setter.invoke(probe, value);
+            return value.equals(property.getField().get(probe));
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    @Nullable
+    private static JsonNode probeNode(Class<?> type, ObjectReader reader)
+    {
+        Class<?> wrapper = ClassUtils.resolvePrimitiveIfNecessary(type);
+        if (CharSequence.class.isAssignableFrom(wrapper)) {
+            return TextNode.valueOf(" Cerebrum Probe ");
+        } else if (wrapper == Boolean.class) {
+            return BooleanNode.TRUE;
+        } else if (Number.class.isAssignableFrom(wrapper)) {
+            return IntNode.valueOf(7);
+        } else if (wrapper.isEnum() && wrapper.getEnumConstants().length > 0) {
+            return TextNode.valueOf(((Enum<?>) wrapper.getEnumConstants()[0]).name());
+        }
+        return null;
+    }
+
+    private static boolean isIndex(String segment)
+    {
+        if (segment.isEmpty() || segment.length() > 9 || segment.length() > 1 && segment.charAt(0) == '0') {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); i++) {
+            if (segment.charAt(i) < '0' || segment.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRemoveOf(JsonNode operation, String path)
+    {
+        return "remove".equals(operation.path("op").asText()) && path.equals(operation.path("path").asText());
+    }
+
+    @Nullable
+    private static String[] splitPath(String path)
+    {
+        if (path.length() < 2 || path.charAt(0) != '/' || path.indexOf('~') != -1) {
+            return null;
+        }
+        String[] segments = path.substring(1).split("/", -1);
+        return segments.length <= 2 ? segments : null;
+    }
+
+    private static final class PatchField
+    {
+        private final String name;
+        private final ObjectReader reader;
+        private final ObjectReader elementReader;
+        private final boolean set;
+
+        private PatchField(String name, ObjectReader reader, @Nullable ObjectReader elementReader, boolean set)
+        {
+            this.name = name;
+            this.reader = reader;
+            this.elementReader = elementReader;
+            this.set = set;
+        }
+    }
+
+    static final class CerebrumPatchUpdate
+    {
+        final Update update;
+        final Criteria guard;
+
+        private CerebrumPatchUpdate(Update update, @Nullable Criteria guard)
+        {
+            this.update = update;
+            this.guard = guard;
+        }
+    }
+}
@@ -3,73 +3,78 @@ package de.helmholtz.marketplace.cerebrum.service.common;
 import com.github.fge.jsonpatch.JsonPatch;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperation;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperationResult;
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumReferenceOperationResult.Status;
+import de.helmholtz.marketplace.cerebrum.entity.CerebrumEntity;
 import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumEntityNotFoundException;
-import de.helmholtz.marketplace.cerebrum.utils.CerebrumControllerUtilities;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCursor;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumRepository;
 
 import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerator.checkUuidValidity;
+import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerator.isValid;
 
-public abstract class CerebrumServiceBase<T, R> implements CerebrumService<T, R>
+public abstract class CerebrumServiceBase<T extends CerebrumEntity, R extends CerebrumRepository<T>>
+        implements CerebrumService<T, R>
 {
-
-    private final Class<R> repositoryClass;
     private final Class<T> entityClass;
+    private final CerebrumEntityMergePlan<T> mergePlan;
+    private final CerebrumEntityCache entityCache;
+    private final CerebrumPatchEngine patchEngine;
+    private final Map<String, BiFunction<R, String, Optional<T>>> finders = new HashMap<>();
 
-    protected CerebrumServiceBase(Class<T> entityClass, Class<R> repository)
+    protected CerebrumServiceBase(Class<T> entityClass, CerebrumEntityCache entityCache,
+                                  CerebrumPatchEngine patchEngine)
     {
-        this.repositoryClass = repository;
         this.entityClass = entityClass;
+        this.mergePlan = CerebrumEntityMergePlan.of(entityClass);
+        this.entityCache = entityCache;
+        this.patchEngine = patchEngine;
     }
 
-    protected Method repositoryMethod(String methodName, Class<?>... parameterTypes)
-    {
-        try {
-            return repositoryClass.getMethod(methodName, parameterTypes);
-        } catch (NoSuchMethodException e) {
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    "the method, "+ methodName + "is unknown to the repository: " + repositoryClass.getSimpleName(), e);
-        }
-    }
-
-    protected Method entityMethod(String methodName, Class<?>... parameterTypes)
+    /**
+     * Makes a repository lookup available to {@link #getEntity(String, String, CerebrumRepository)}.
+     * Subclasses register their finders once, from their constructor.
+     */
+    protected void registerFinder(String attribute, BiFunction<R, String, Optional<T>> finder)
     {
-        try {
-            return entityClass.getMethod(methodName, parameterTypes);
-        } catch (NoSuchMethodException e) {
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    "the method, "+ methodName + "is unknown to the entity: " + entityClass.getSimpleName(), e);
-        }
+        finders.put(attribute, finder);
     }
 
-    protected Object invoke(Method method, Object obj, Object... args)
+    /**
+     * Returns the entity written by {@code write}. Services of entities with
+     * {@code @DBRef}s read it through their reference loader, so that write
+     * responses render references the way read responses do.
+     */
+    protected T loadWritten(Supplier<T> write)
     {
-        try {
-            return method.invoke(obj, args);
-        } catch (IllegalAccessException e) {
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    "Due to lack of accessibility, this method cannot be invoke", e);
-        } catch (InvocationTargetException e) {
-            throw new ResponseStatusException(
-                    HttpStatus.INTERNAL_SERVER_ERROR,
-                    "The called method throws an exception, check the cause for details", e);
-        }
+        return write.get();
     }
 
     protected String getPath(T entity)
@@ -95,52 +100,101 @@ public abstract class CerebrumServiceBase<T, R> implements CerebrumService<T, R>
     protected Optional<T> findByUuid(String uuid, R repository)
     {
         checkUuidValidity(uuid);
-        //noinspection unchecked
-        return (Optional<T>) invoke(repositoryMethod("findByUuid", String.class), repository, uuid);
+        return repository.findByUuid(uuid);
     }
 
     @Override
     public Page<T> getAllEntities(PageRequest page, R repository)
     {
-        //noinspection unchecked
-        return (Page<T>) invoke(repositoryMethod("findAll", Pageable.class), repository, page);
+        return repository.findAll(page);
+    }
+
+    /**
+     * Returns the page, counting the total as the count mode says; an exact
+     * count of whole entities goes through the repository.
+     *
+     * @param projection query holding the projection of the entities, if any
+     */
+    protected Slice<T> getAllEntities(PageRequest page, CerebrumCountMode count, Query projection,
+                                      R repository, CerebrumMongoOperations mongoOperations)
+    {
+        if (count == CerebrumCountMode.EXACT && projection.getFieldsObject().isEmpty()) {
+            return getAllEntities(page, repository);
+        }
+        return mongoOperations.findPage(projection, page, count, entityClass);
+    }
+
+    /**
+     * Returns the page of entities following the {@code after} cursor, or the
+     * first page when it is null, without counting the total.
+     *
+     * @param projection query holding the projection of the entities, if any
+     */
+    protected CerebrumKeysetSlice<T> getAllEntities(
+            Sort sort, int size, String after, Query projection, CerebrumMongoOperations mongoOperations)
+    {
+        return mongoOperations.findSlice(projection, sort, size, CerebrumCursor.decode(after), entityClass);
     }
 
+    /**
+     * Returns the entity, read through the entity cache. Every method of this
+     * class that changes an entity evicts it from the cache.
+     */
     @Override
     public T getEntity(String uuid, R repository)
     {
-        return findByUuid(uuid, repository)
+        checkUuidValidity(uuid);
+        return entityCache.findByUuid(uuid, entityClass, () -> repository.findByUuid(uuid))
                 .orElseThrow(() -> new CerebrumEntityNotFoundException(this.entityClass.getName(), uuid));
     }
 
+    /**
+     * Returns the entity read with the projection of the query; a whole entity
+     * is read through the repository.
+     */
+    protected T getEntity(String uuid, Query projection, R repository, CerebrumMongoOperations mongoOperations)
+    {
+        if (projection.getFieldsObject().isEmpty()) {
+            return getEntity(uuid, repository);
+        }
+        checkUuidValidity(uuid);
+        T entity = mongoOperations.findByUuid(uuid, projection, entityClass);
+        if (entity == null) {
+            throw new CerebrumEntityNotFoundException(this.entityClass.getName(), uuid);
+        }
+        return entity;
+    }
+
     @Override
     public T getEntity(String attribute, String value, R repository)
     {
-        //noinspection unchecked
-        Optional<T> entity = (Optional<T>) invoke(repositoryMethod(
-                "findBy" + attribute.substring(0, 1).toUpperCase() + attribute.substring(1), String.class),
-                repository, value);
-
-        return entity.orElseThrow(() -> new CerebrumEntityNotFoundException(this.entityClass.getName(), attribute));
+        BiFunction<R, String, Optional<T>> finder = finders.get(attribute);
+        if (finder == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.INTERNAL_SERVER_ERROR,
+                    "the attribute, " + attribute + " cannot be used to look up the entity: "
+                            + entityClass.getSimpleName());
+        }
+        return finder.apply(repository, value)
+                .orElseThrow(() -> new CerebrumEntityNotFoundException(this.entityClass.getName(), attribute));
     }
 
     @Override
     public T createEntity(T entity, R repository)
     {
-        //noinspection unchecked
-        return (T) invoke(repositoryMethod("save", Object.class), repository, entity);
+        T createdEntity = repository.save(entity);
+        entityCache.invalidate(entityClass, createdEntity.getUuid());
+        return createdEntity;
     }
 
     @Override
     public ResponseEntity<T> createEntity(T entity, R repository, UriComponentsBuilder uriComponentsBuilder)
     {
-        UriComponents uriComponents = uriComponentsBuilder
-                .path("/api/v0/" + getPath(entity) + "/{id}")
-                .buildAndExpand(invoke(entityMethod("getUuid"), entity));
-        URI location = uriComponents.toUri();
+        uriComponentsBuilder.path("/api/v0/" + getPath(entity) + "/{id}");
 
-        //noinspection unchecked
-        T createdEntity = (T) invoke(repositoryMethod("save", Object.class), repository, entity);
+        T createdEntity = repository.save(entity);
+        entityCache.invalidate(entityClass, createdEntity.getUuid());
+        URI location = uriComponentsBuilder.buildAndExpand(createdEntity.getUuid()).toUri();
 
         return ResponseEntity.created(location).body(createdEntity);
     }
@@ -150,43 +204,17 @@ public abstract class CerebrumServiceBase<T, R> implements CerebrumService<T, R>
                                           R repository, UriComponentsBuilder uriComponentsBuilder)
     {
         AtomicBoolean isCreated = new AtomicBoolean(false);
-        T updatedEntity = findByUuid(uuid, repository).map(retrievedEntity -> {
-            Field[] fields = this.entityClass.getDeclaredFields();
-
-            for (Field field : fields) {
-                if (field.getDeclaringClass() == this.entityClass
-                        && Modifier.toString(field.getModifiers()).contains("private")) {
-                    try {
-                        field.setAccessible(true);
-                        Field submittedEntityField = submittedEntity.getClass().getDeclaredField(field.getName());
-                        submittedEntityField.setAccessible(true);
-                        if (submittedEntityField.get(submittedEntity) != null) {
-                            field.set(retrievedEntity, submittedEntityField.get(submittedEntity));
-                        }
-                        field.setAccessible(false);
-                        submittedEntityField.setAccessible(false);
-                    } catch (IllegalAccessException e) {
-                        throw new ResponseStatusException(
-                                HttpStatus.INTERNAL_SERVER_ERROR,
-                                "Due to lack of accessibility, this method cannot be invoke", e);
-                    } catch (NoSuchFieldException e) {
-                        throw new ResponseStatusException(
-                                HttpStatus.INTERNAL_SERVER_ERROR,
-                                "the field, "+ field.getName() + "is unknown to the entity: "
-                                        + entityClass.getSimpleName(), e);
-                    }
-                }
-            }
+        T updatedEntity = loadWritten(() -> findByUuid(uuid, repository).map(retrievedEntity -> {
+            mergePlan.merge(submittedEntity, retrievedEntity);
 
-            //noinspection unchecked
-            return (T) invoke(repositoryMethod("save", Object.class), repository, retrievedEntity);
+            return repository.save(retrievedEntity);
         }).orElseGet(() -> {
             isCreated.set(true);
-            invoke(entityMethod("setUuid", String.class), submittedEntity, uuid);
+            submittedEntity.setUuid(uuid);
 
-            //noinspection unchecked
-            return (T) invoke(repositoryMethod("save", Object.class), repository, submittedEntity);
-        });
+            return repository.save(submittedEntity);
+        }));
+        entityCache.invalidate(entityClass, uuid);
 
         if (isCreated.get()) {
             UriComponents uriComponents = uriComponentsBuilder
@@ -201,15 +229,16 @@ public abstract class CerebrumServiceBase<T, R> implements CerebrumService<T, R>
     @Override
     public ResponseEntity<T> partiallyUpdateEntity(String uuid, R repository, JsonPatch patch)
     {
-        T partiallyUpdatedEntity = findByUuid(uuid, repository)
-                .map(retrievedEntity -> {
-                    T patchedEntity = CerebrumControllerUtilities
-                            .applyPatch(patch, retrievedEntity, this.entityClass);
+        checkUuidValidity(uuid);
+        T partiallyUpdatedEntity = loadWritten(() -> patchEngine.patchAtomically(uuid, patch, this.entityClass)
+                .orElseGet(() -> repository.findByUuid(uuid)
+                        .map(retrievedEntity -> {
+                            T patchedEntity = patchEngine.applyPatch(patch, retrievedEntity, this.entityClass);
 
-                    //noinspection unchecked
-                    return (T) invoke(repositoryMethod("save", Object.class), repository, patchedEntity);
-                })
-                .orElseThrow(()-> new CerebrumEntityNotFoundException("organization", uuid));
+                            return repository.save(patchedEntity);
+                        })
+                        .orElseThrow(() -> new CerebrumEntityNotFoundException(this.entityClass.getName(), uuid))));
+        entityCache.invalidate(entityClass, uuid);
         return ResponseEntity.ok().body(partiallyUpdatedEntity);
     }
 
@@ -217,7 +246,117 @@ public abstract class CerebrumServiceBase<T, R> implements CerebrumService<T, R>
     public ResponseEntity<T>  deleteEntity(String uuid, R repository)
     {
         checkUuidValidity(uuid);
-        invoke(repositoryMethod("deleteByUuid", String.class), repository, uuid);
+        repository.deleteByUuid(uuid);
+        entityCache.invalidate(entityClass, uuid);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Adds or removes a reference in the {@code @DBRef} collection {@code property}
+     * with a single update, without loading the entity.
+     *
+     * @return 200 with the updated entity, or 204 if the reference was already
+     * present (add) or absent (remove)
+     */
+    protected ResponseEntity<T> updateReference(String uuid, String property, Class<?> referenceClass,
+                                                String referenceUuid, boolean toAdd,
+                                                CerebrumMongoOperations mongoOperations)
+    {
+        checkUuidValidity(uuid);
+        checkUuidValidity(referenceUuid);
+        T updatedEntity;
+        if (toAdd) {
+            if (!mongoOperations.existsByUuid(referenceUuid, referenceClass)) {
+                throw new CerebrumEntityNotFoundException(referenceClass.getName(), referenceUuid);
+            }
+            updatedEntity = loadWritten(() -> mongoOperations.addReference(
+                    uuid, property, this.entityClass, referenceUuid, referenceClass));
+        } else {
+            updatedEntity = loadWritten(() -> mongoOperations.removeReference(
+                    uuid, property, this.entityClass, referenceUuid, referenceClass));
+        }
+        entityCache.invalidate(entityClass, uuid);
+
+        if (updatedEntity != null) {
+            return ResponseEntity.ok().body(updatedEntity);
+        }
+        if (!mongoOperations.existsByUuid(uuid, this.entityClass)) {
+            throw new CerebrumEntityNotFoundException(this.entityClass.getName(), uuid);
+        }
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Applies a batch of add/remove operations to the {@code @DBRef} collection
+     * {@code property}. The existence of the added entities is read with one
+     * query; the net change is then written in one findAndModify. Operations
+     * are evaluated in order, against the references held when the change
+     * was written.
+     */
+    protected ResponseEntity<List<CerebrumReferenceOperationResult>> updateReferences(
+            String uuid, String property, Class<?> referenceClass,
+            List<CerebrumReferenceOperation> operations, CerebrumMongoOperations mongoOperations)
+    {
+        checkUuidValidity(uuid);
+        Set<String> candidates = new HashSet<>();
+        for (CerebrumReferenceOperation operation : operations) {
+            if (CerebrumReferenceOperation.ADD.equals(operation.getOp())
+                    && Boolean.TRUE.equals(isValid(operation.getUuid()))) {
+                candidates.add(operation.getUuid());
+            }
+        }
+        Set<String> existing = candidates.isEmpty()
+                ? Collections.emptySet()
+                : mongoOperations.findExistingUuids(candidates, referenceClass);
+
+        // the last operation on a uuid decides whether it is held afterwards
+        Map<String, Boolean> held = new HashMap<>();
+        for (CerebrumReferenceOperation operation : operations) {
+            String referenceUuid = operation.getUuid();
+            if (Boolean.FALSE.equals(isValid(referenceUuid))) {
+                continue;
+            }
+            if (!CerebrumReferenceOperation.ADD.equals(operation.getOp())) {
+                held.put(referenceUuid, false);
+            } else if (existing.contains(referenceUuid)) {
+                held.put(referenceUuid, true);
+            }
+        }
+        Set<String> added = new HashSet<>();
+        Set<String> removed = new HashSet<>();
+        held.forEach((referenceUuid, isHeld) -> (isHeld ? added : removed).add(referenceUuid));
+
+        Set<String> referenced = mongoOperations.updateReferences(
+                uuid, property, this.entityClass, added, removed, referenceClass);
+        if (referenced == null) {
+            throw new CerebrumEntityNotFoundException(this.entityClass.getName(), uuid);
+        }
+
+        Set<String> current = new HashSet<>(referenced);
+        List<CerebrumReferenceOperationResult> results = new ArrayList<>(operations.size());
+        for (CerebrumReferenceOperation operation : operations) {
+            String referenceUuid = operation.getUuid();
+            Status status;
+            if (Boolean.FALSE.equals(isValid(referenceUuid))) {
+                status = Status.INVALID_UUID;
+            } else if (CerebrumReferenceOperation.ADD.equals(operation.getOp())) {
+                if (current.contains(referenceUuid)) {
+                    status = Status.ALREADY_PRESENT;
+                } else if (!existing.contains(referenceUuid)) {
+                    status = Status.NOT_FOUND;
+                } else {
+                    current.add(referenceUuid);
+                    status = Status.ADDED;
+                }
+            } else {
+                status = current.remove(referenceUuid) ? Status.REMOVED : Status.NOT_PRESENT;
+            }
+            results.add(new CerebrumReferenceOperationResult(operation.getOp(), referenceUuid, status));
+        }
+
+        if (!current.equals(referenced)) {
+            entityCache.invalidate(entityClass, uuid);
+        }
+        return ResponseEntity.ok().body(results);
+    }
 }
@@ -0,0 +1,186 @@
+package de.helmholtz.marketplace.cerebrum.service.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves the identity of a bearer token's subject, from the claims of the
+ * token when it carries them, or else from the userinfo of the HDF AAI.
+ *
+ * Userinfo responses are cached per token until it expires, and concurrent
+ * calls for the same token share one upstream request; failed requests are
+ * not cached. A response has to arrive within {@code cerebrum.aai.read-timeout};
+ * timeouts, connection failures and server errors are retried
+ * {@code cerebrum.aai.retries} times with a backoff.
+ *
+ * The upstream latency is published as {@code cerebrum.aai.userinfo}, tagged
+ * with the outcome, and the failures as {@code cerebrum.aai.userinfo.errors},
+ * tagged with the HTTP status or the exception. Where the identities come
+ * from is counted as {@code cerebrum.aai.identity}, tagged with the source.
+ */
+@Component
+public class CerebrumUserInfoClient
+{
+    private static final String METER = "cerebrum.aai.userinfo";
+    private static final List<String> IDENTITY_CLAIMS = List.of("sub", "given_name", "family_name", "email");
+
+    private final WebClient authorisationServer;
+    private final MeterRegistry meterRegistry;
+    private final String userInfoUri;
+    private final Duration readTimeout;
+    private final int retries;
+    private final AsyncCache<String, UserInfo> userInfos;
+
+    public CerebrumUserInfoClient(WebClient authorisationServer,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${cerebrum.aai.userinfo-uri:https://login.helmholtz.de/oauth2/userinfo}")
+                                          String userInfoUri,
+                                  @Value("${cerebrum.aai.read-timeout:5s}") Duration readTimeout,
+                                  @Value("${cerebrum.aai.retries:2}") int retries,
+                                  @Value("${cerebrum.aai.userinfo-cache.maximum-size:10000}") long maximumSize)
+    {
+        this.authorisationServer = authorisationServer;
+        this.meterRegistry = meterRegistry;
+        this.userInfoUri = userInfoUri;
+        this.readTimeout = readTimeout;
+        this.retries = retries;
+        this.userInfos = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, userInfos.synchronous(), "userinfo");
+    }
+
+    /**
+     * Returns the sub, given_name, family_name and email of the token's
+     * subject, read from the validated token if it has all of these claims.
+     * Only otherwise is the userinfo requested.
+     */
+    public Mono<JsonNode> getIdentity(Jwt token)
+    {
+        ObjectNode identity = JsonNodeFactory.instance.objectNode();
+        for (String claim : IDENTITY_CLAIMS) {
+            String value = token.getClaimAsString(claim);
+            if (value == null || value.isEmpty()) {
+                meterRegistry.counter("cerebrum.aai.identity", "source", "userinfo").increment();
+                return getUserInfo(token);
+            }
+            identity.put(claim, value);
+        }
+        meterRegistry.counter("cerebrum.aai.identity", "source", "token").increment();
+        return Mono.just(identity);
+    }
+
+    /**
+     * Returns the userinfo of the token's subject. The response is emitted on
+     * a worker thread, so it may be processed by blocking code.
+     */
+    public Mono<JsonNode> getUserInfo(Jwt token)
+    {
+        return Mono.defer(() -> Mono.fromFuture(userInfos.get(keyOf(token), (key, executor) -> request(token))))
+                .publishOn(Schedulers.boundedElastic())
+                .map(userInfo -> userInfo.json);
+    }
+
+    private CompletableFuture<UserInfo> request(Jwt token)
+    {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return authorisationServer
+                .get()
+                .uri(userInfoUri)
+                .headers(headers -> headers.setBearerAuth(token.getTokenValue()))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(readTimeout)
+                .retryWhen(Retry.backoff(retries, Duration.ofMillis(100))
+                        .filter(CerebrumUserInfoClient::isTransient)
+                        .onRetryExhaustedThrow((retry, signal) -> signal.failure()))
+                .doOnSuccess(json -> sample.stop(meterRegistry.timer(METER, "outcome", "success")))
+                .doOnError(e -> {
+                    sample.stop(meterRegistry.timer(METER, "outcome", "error"));
+                    meterRegistry.counter(METER + ".errors", "cause", causeOf(e)).increment();
+                })
+                .map(json -> new UserInfo(json, token.getExpiresAt()))
+                .toFuture();
+    }
+
+    private static String keyOf(Jwt token)
+    {
+        String jti = token.getId();
+        return token.getSubject() + ":" + (jti == null ? token.getTokenValue() : jti);
+    }
+
+    private static boolean isTransient(Throwable e)
+    {
+        return e instanceof WebClientResponseException
+                ? ((WebClientResponseException) e).getRawStatusCode() >= 500
+                : e instanceof TimeoutException || e instanceof IOException;
+    }
+
+    private static String causeOf(Throwable e)
+    {
+        return e instanceof WebClientResponseException
+                ? String.valueOf(((WebClientResponseException) e).getRawStatusCode())
+                : e.getClass().getSimpleName();
+    }
+
+    private static final class UserInfo
+    {
+        private final JsonNode json;
+        private final Instant expiresAt;
+
+        private UserInfo(JsonNode json, Instant expiresAt)
+        {
+            this.json = json;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /* tokens without an expiry are only shared by concurrent calls */
+    private static final class UntilTokenExpiry implements Expiry<String, UserInfo>
+    {
+        @Override
+        public long expireAfterCreate(String key, UserInfo userInfo, long currentTime)
+        {
+            if (userInfo.expiresAt == null) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(Instant.now(), userInfo.expiresAt).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, UserInfo userInfo, long currentTime, long currentDuration)
+        {
+            return expireAfterCreate(key, userInfo, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, UserInfo userInfo, long currentTime, long currentDuration)
+        {
+            return currentDuration;
+        }
+    }
+}
@@ -1,34 +1,25 @@
 package de.helmholtz.marketplace.cerebrum.utils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jsonpatch.JsonPatch;
-import com.github.fge.jsonpatch.JsonPatchException;
 import org.springframework.data.domain.Sort;
-import org.springframework.http.HttpStatus;
-import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
 
 public final class CerebrumControllerUtilities
 {
+    public static final String CURSOR_PAGING = "cursor";
+
     private CerebrumControllerUtilities()
     { }
 
-    public static <T> T applyPatch(
-            JsonPatch patch, T target, Class<T> clazz)
-    {
-        try {
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode patched = patch.apply(objectMapper.convertValue(target, JsonNode.class));
-            return objectMapper.treeToValue(patched, clazz);
-        } catch (JsonPatchException | JsonProcessingException e) {
-            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR,  e.getLocalizedMessage());
-        }
-    }
-
     public static List<Sort.Order> getOrders(List<String> sorts)
     {
         List<Sort.Order> orders = new ArrayList<>();
@@ -47,6 +38,48 @@ public final class CerebrumControllerUtilities
         return orders;
     }
 
+    public static boolean isCursorPaging(String paging, String after)
+    {
+        return after != null || CURSOR_PAGING.equals(paging);
+    }
+
+    /**
+     * Sets the link to the page following the slice: the current request with
+     * the slice's cursor as {@code after}.
+     */
+    public static <T> CerebrumKeysetSlice<T> withNextLink(CerebrumKeysetSlice<T> slice)
+    {
+        if (slice.getAfter() != null) {
+            slice.setNext(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page")
+                    .replaceQueryParam("paging", CURSOR_PAGING)
+                    .replaceQueryParam("after", slice.getAfter())
+                    .toUriString());
+        }
+        return slice;
+    }
+
+    /**
+     * Lets a mapping that runs on another thread, such as a step of a reactive
+     * response, see the current request. The entities it marks as links or
+     * restricts to a field selection are then written accordingly once the
+     * response is dispatched.
+     */
+    public static <T, R> Function<T, R> withinRequest(Function<T, R> mapping)
+    {
+        HttpServletRequest request =
+                ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+        return value -> {
+            RequestAttributes outer = RequestContextHolder.getRequestAttributes();
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+            try {
+                return mapping.apply(value);
+            } finally {
+                RequestContextHolder.setRequestAttributes(outer);
+            }
+        };
+    }
+
     public static <T> Boolean checkField(String fieldName, Class<T> clazz)
     {
         try {
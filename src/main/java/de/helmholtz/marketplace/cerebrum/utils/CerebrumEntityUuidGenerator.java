@@ -1,11 +1,9 @@
 package de.helmholtz.marketplace.cerebrum.utils;
 
-import java.security.SecureRandom;
-import java.time.Duration;
-import java.time.LocalDateTime;
-import java.util.Arrays;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
 import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidUuidException;
 
@@ -18,6 +16,8 @@ public class CerebrumEntityUuidGenerator
         PERSON ("prn", "person"),
         MARKETSERVICE ("svc", "marketservice");
 
+        private static final PrefixEnum[] VALUES = values();
+
         private final String prefix;
         private final String className;
 
@@ -27,6 +27,11 @@ public class CerebrumEntityUuidGenerator
             this.className = className;
         }
 
+        public String getPrefix()
+        {
+            return prefix;
+        }
+
         public static String getEntityPrefix(String className)
         {
             for (PrefixEnum p : PrefixEnum.values()) {
@@ -41,28 +46,46 @@ public class CerebrumEntityUuidGenerator
 
         public static void checkPrefixValidity(String prefix)
         {
-            boolean valid = Arrays.stream(
-                    PrefixEnum.values()).anyMatch(p -> p.prefix.equals(prefix));
-            if (!valid) throw new IllegalArgumentException(
+            for (PrefixEnum p : VALUES) {
+                if (p.prefix.equals(prefix)) {
+                    return;
+                }
+            }
+            throw new IllegalArgumentException(
                     "Prefix: '" + prefix +"' is unknown to cerebrum." );
         }
     }
 
-    public static synchronized String generate(String prefix)
+    /* 100 ns intervals between the start of the Gregorian calendar and the Unix epoch */
+    private static final long GREGORIAN_OFFSET = 0x01B21DD213814000L;
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+    private static final int PREFIX_LENGTH = 3;
+    private static final int UUID_LENGTH = 36;
+
+    public static String generate(String prefix)
     {
         PrefixEnum.checkPrefixValidity(prefix);
         return prefix + "-" + generateType1UUID();
     }
 
+    /**
+     * Checks that the id is a known prefix, a hyphen and a canonical UUID of
+     * a non-zero version, in the single pass of {@link #parse}. Nothing is
+     * allocated or thrown, whatever the id.
+     */
     public static Boolean isValid(String id)
     {
-        try {
-            PrefixEnum.checkPrefixValidity(id.split("-")[0]);
-            UUID uuid = UUID.fromString(id.substring(id.indexOf('-') + 1));
-            return uuid.version() > 0;
-        } catch (IllegalArgumentException | NullPointerException ex) {
-            return false;
-        }
+        return scan(id, false) != null;
+    }
+
+    /**
+     * Parses an id into its prefix and UUID in a single pass over its
+     * characters; returns null if it is not valid. Nothing is allocated or
+     * thrown for an invalid id.
+     */
+    public static ParsedUuid parse(String id)
+    {
+        return scan(id, true);
     }
 
     public static void checkUuidValidity(String uuid)
@@ -71,36 +94,131 @@ public class CerebrumEntityUuidGenerator
             throw new CerebrumInvalidUuidException(uuid);
     }
 
-    /**
-     * Type 1 UUID Generation
-     * source: https://github.com/eugenp/tutorials/blob/master/core-java-modules/core-java/src/main/java/com/baeldung/uuid/UUIDGenerator.java
+    private static PrefixEnum prefixOf(String id)
+    {
+        if (id.length() != PREFIX_LENGTH + 1 + UUID_LENGTH || id.charAt(PREFIX_LENGTH) != '-') {
+            return null;
+        }
+        for (PrefixEnum p : PrefixEnum.VALUES) {
+            if (id.startsWith(p.prefix)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * validates the id and accumulates the bits of its UUID: hyphens at 8, 13,
+     * 18 and 23 after the prefix, hex digits elsewhere. Returns null if the id
+     * is invalid, the parsed id if asked to, and a shared marker otherwise.
      */
-    public static UUID generateType1UUID()
+    private static ParsedUuid scan(String id, boolean parse)
     {
+        PrefixEnum prefix = id == null ? null : prefixOf(id);
+        if (prefix == null) {
+            return null;
+        }
+        int start = PREFIX_LENGTH + 1;
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char c = id.charAt(start + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return null;
+                }
+                continue;
+            }
+            int digit = hexDigit(c);
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 18) {
+                mostSigBits = (mostSigBits << 4) | digit;
+            } else {
+                leastSigBits = (leastSigBits << 4) | digit;
+            }
+        }
+        /* the version is the first digit of the third group */
+        if ((mostSigBits & 0xF000L) == 0) {
+            return null;
+        }
+        return parse ? new ParsedUuid(prefix, new UUID(mostSigBits, leastSigBits)) : ParsedUuid.VALID;
+    }
 
-        long most64SigBits = get64MostSignificantBitsForVersion1();
-        long least64SigBits = get64LeastSignificantBitsForVersion1();
+    /* ASCII only, unlike Character.digit */
+    private static int hexDigit(char c)
+    {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
 
-        return new UUID(most64SigBits, least64SigBits);
+    /**
+     * Generates a type 1 UUID without locking. Its timestamp comes from a
+     * monotonic clock counting 100 ns intervals: a UUID generated in the same
+     * interval as the previous one takes the next interval instead, so no two
+     * UUIDs of this process share a timestamp. The clock sequence and node are
+     * random, drawn from the generating thread's random source, which sets
+     * apart the UUIDs of different processes.
+     */
+    public static UUID generateType1UUID()
+    {
+        return new UUID(get64MostSignificantBitsForVersion1(), get64LeastSignificantBitsForVersion1());
     }
 
     private static long get64LeastSignificantBitsForVersion1()
     {
-        SecureRandom random = new SecureRandom();
-        long random63BitLong = random.nextLong() & 0x3FFFFFFFFFFFFFFFL;
-        long variant3BitFlag = 0x8000000000000000L;
-        return random63BitLong + variant3BitFlag;
+        long random62BitLong = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL;
+        long variantBits = 0x8000000000000000L;
+        return random62BitLong | variantBits;
     }
 
     private static long get64MostSignificantBitsForVersion1()
     {
-        LocalDateTime start = LocalDateTime.of(1582, 10, 15, 0, 0, 0);
-        Duration duration = Duration.between(start, LocalDateTime.now());
-        long seconds = duration.getSeconds();
-        long nanos = duration.getNano();
-        long timeForUuidIn100Nanos = seconds * 10000000 + nanos * 100;
-        long least12SignificatBitOfTime = (timeForUuidIn100Nanos & 0x000000000000FFFFL) >> 4;
+        long timestamp = nextTimestamp();
+        long timeLow = timestamp & 0xFFFFFFFFL;
+        long timeMid = (timestamp >>> 32) & 0xFFFFL;
+        long timeHigh = (timestamp >>> 48) & 0x0FFFL;
         long version = 1 << 12;
-        return (timeForUuidIn100Nanos & 0xFFFFFFFFFFFF0000L) + version + least12SignificatBitOfTime;
+        return (timeLow << 32) | (timeMid << 16) | version | timeHigh;
+    }
+
+    private static long nextTimestamp()
+    {
+        long now = System.currentTimeMillis() * 10000 + GREGORIAN_OFFSET;
+        while (true) {
+            long last = LAST_TIMESTAMP.get();
+            long next = now > last ? now : last + 1;
+            if (LAST_TIMESTAMP.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    public static final class ParsedUuid
+    {
+        /* returned by the scan of isValid, which needs no parsed id */
+        private static final ParsedUuid VALID = new ParsedUuid(null, null);
+
+        private final PrefixEnum prefix;
+        private final UUID uuid;
+
+        private ParsedUuid(PrefixEnum prefix, UUID uuid)
+        {
+            this.prefix = prefix;
+            this.uuid = uuid;
+        }
+
+        public PrefixEnum getPrefix()
+        {
+            return prefix;
+        }
+
+        public UUID getUuid()
+        {
+            return uuid;
+        }
     }
 }
@@ -0,0 +1,99 @@
+package de.helmholtz.marketplace.cerebrum.annotation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumEntityNotFoundException;
+import de.helmholtz.marketplace.cerebrum.service.MarketUserService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CerebrumCurrentUserResolverTest
+{
+    private static final String SUB = "110248495921238986420";
+    private final MarketUserService marketUserService = mock(MarketUserService.class);
+    private final CerebrumCurrentUserResolver resolver =
+            new CerebrumCurrentUserResolver(marketUserService, Duration.ofMinutes(1), 100);
+    private final MarketUser user = new MarketUser();
+
+    @BeforeEach
+    void setUp()
+    {
+        user.setUuid("usr-5189a7bc-d630-11ea-87d0-0242ac130003");
+        user.setSub(SUB);
+        given(marketUserService.getUserBySub(SUB)).willReturn(user);
+        Jwt token = Jwt.withTokenValue("token").header("alg", "RS256").subject(SUB).build();
+        SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(token));
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test void
+    givenSameRequest_whenResolveTwice_thenLookedUpOnce()
+    {
+        ServletWebRequest request = new ServletWebRequest(new MockHttpServletRequest());
+
+        assertThat(resolver.resolveArgument(null, null, request, null)).isSameAs(user);
+        assertThat(resolver.resolveArgument(null, null, request, null)).isSameAs(user);
+
+        verify(marketUserService, times(1)).getUserBySub(SUB);
+        verify(marketUserService, never()).getUser(user.getUuid(), null, null);
+    }
+
+    @Test void
+    givenKnownSub_whenNextRequest_thenReadByUuid()
+    {
+        given(marketUserService.getUser(user.getUuid(), null, null)).willReturn(user);
+
+        resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+        Object resolved = resolver.resolveArgument(
+                null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+
+        assertThat(resolved).isSameAs(user);
+        verify(marketUserService, times(1)).getUserBySub(SUB);
+        verify(marketUserService, times(1)).getUser(user.getUuid(), null, null);
+    }
+
+    @Test void
+    givenDeletedUser_whenNextRequest_thenLookedUpBySubAgain()
+    {
+        given(marketUserService.getUser(user.getUuid(), null, null))
+                .willThrow(new CerebrumEntityNotFoundException("MarketUser", user.getUuid()));
+
+        resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+        resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+
+        verify(marketUserService, times(2)).getUserBySub(SUB);
+    }
+
+    @Test void
+    givenChangedSub_whenNextRequest_thenLookedUpBySubAgain()
+    {
+        MarketUser changed = new MarketUser();
+        changed.setSub("another sub");
+        given(marketUserService.getUser(user.getUuid(), null, null)).willReturn(changed);
+
+        resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+        resolver.resolveArgument(null, null, new ServletWebRequest(new MockHttpServletRequest()), null);
+
+        verify(marketUserService, times(2)).getUserBySub(SUB);
+    }
+}
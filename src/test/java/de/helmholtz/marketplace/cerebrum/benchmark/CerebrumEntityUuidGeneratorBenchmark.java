@@ -0,0 +1,86 @@
+package de.helmholtz.marketplace.cerebrum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerator;
+
+/**
+ * Generates entity uuids from 1, 8 and 32 threads with the lock-free generator
+ * and with the synchronized one it replaced (the legacy* methods).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CerebrumEntityUuidGeneratorBenchmark
+{
+    @Benchmark
+    @Threads(1)
+    public String legacyGenerate1Thread()
+    {
+        return legacyGenerate("svc");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String generate1Thread()
+    {
+        return CerebrumEntityUuidGenerator.generate("svc");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacyGenerate8Threads()
+    {
+        return legacyGenerate("svc");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String generate8Threads()
+    {
+        return CerebrumEntityUuidGenerator.generate("svc");
+    }
+
+    @Benchmark
+    @Threads(32)
+    public String legacyGenerate32Threads()
+    {
+        return legacyGenerate("svc");
+    }
+
+    @Benchmark
+    @Threads(32)
+    public String generate32Threads()
+    {
+        return CerebrumEntityUuidGenerator.generate("svc");
+    }
+
+    private static synchronized String legacyGenerate(String prefix)
+    {
+        CerebrumEntityUuidGenerator.PrefixEnum.checkPrefixValidity(prefix);
+        SecureRandom random = new SecureRandom();
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) + 0x8000000000000000L;
+        Duration duration = Duration.between(LocalDateTime.of(1582, 10, 15, 0, 0, 0), LocalDateTime.now());
+        long time = duration.getSeconds() * 10000000 + duration.getNano() * 100;
+        long mostSigBits = (time & 0xFFFFFFFFFFFF0000L) + (1 << 12) + ((time & 0x000000000000FFFFL) >> 4);
+        return prefix + "-" + new UUID(mostSigBits, leastSigBits);
+    }
+}
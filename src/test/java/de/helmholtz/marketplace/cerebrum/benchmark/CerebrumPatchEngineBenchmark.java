@@ -0,0 +1,93 @@
+package de.helmholtz.marketplace.cerebrum.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.concurrent.TimeUnit;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
+
+/**
+ * Applies typical MarketService patches with the patch engine and with the
+ * per-request ObjectMapper round trip it replaced (the legacy* methods).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CerebrumPatchEngineBenchmark
+{
+    private static final String SCALAR_PATCH = "["
+            + "{\"op\": \"replace\", \"path\": \"/summary\", \"value\": \"Sync+Share Service\"},"
+            + "{\"op\": \"replace\", \"path\": \"/version\", \"value\": \"1.0.2\"}]";
+    private static final String COLLECTION_PATCH = "["
+            + "{\"op\": \"add\", \"path\": \"/tags/-\", \"value\": \"storage\"}]";
+
+    private CerebrumPatchEngine patchEngine;
+    private MarketService service;
+    private JsonPatch scalarPatch;
+    private JsonPatch collectionPatch;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        ObjectMapper objectMapper = new ObjectMapper();
+        patchEngine = new CerebrumPatchEngine(objectMapper, new MongoMappingContext(), null);
+        scalarPatch = objectMapper.readValue(SCALAR_PATCH, JsonPatch.class);
+        collectionPatch = objectMapper.readValue(COLLECTION_PATCH, JsonPatch.class);
+
+        service = new MarketService();
+        service.setName("Sync+Share");
+        service.setEntryPoint("https://syncandshare.desy.de");
+        service.setDescription("A awesome Sync+Share Service provides by Helmholtz Zentrum xy");
+        service.setEmail("fake-email@example.org");
+        service.addTag("cloud");
+        service.addTarget("researchers");
+    }
+
+    @Benchmark
+    public MarketService legacyScalarPatch() throws Exception
+    {
+        return legacyApplyPatch(scalarPatch, service);
+    }
+
+    @Benchmark
+    public MarketService engineScalarPatch()
+    {
+        return patchEngine.applyPatch(scalarPatch, service, MarketService.class);
+    }
+
+    @Benchmark
+    public MarketService legacyCollectionPatch() throws Exception
+    {
+        return legacyApplyPatch(collectionPatch, service);
+    }
+
+    @Benchmark
+    public MarketService engineCollectionPatch()
+    {
+        return patchEngine.applyPatch(collectionPatch, service, MarketService.class);
+    }
+
+    private static MarketService legacyApplyPatch(JsonPatch patch, MarketService target) throws Exception
+    {
+        ObjectMapper objectMapper = new ObjectMapper();
+        JsonNode patched = patch.apply(objectMapper.convertValue(target, JsonNode.class));
+        return objectMapper.treeToValue(patched, MarketService.class);
+    }
+}
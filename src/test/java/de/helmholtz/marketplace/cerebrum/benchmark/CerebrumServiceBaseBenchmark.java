@@ -0,0 +1,175 @@
+package de.helmholtz.marketplace.cerebrum.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumProjector;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumRepository;
+import de.helmholtz.marketplace.cerebrum.repository.OrganizationRepository;
+import de.helmholtz.marketplace.cerebrum.service.OrganizationService;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
+
+import static de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerator.checkUuidValidity;
+
+/**
+ * Compares the typed dispatch of CerebrumServiceBase with the reflective
+ * look up and invocation it used before (reproduced in the legacy* methods).
+ * Each pair times the same step: the uuid lookup and the save go straight to
+ * the repository, the update runs the whole find, merge and save. The
+ * repository is an in-memory proxy, so only the dispatch cost is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CerebrumServiceBaseBenchmark
+{
+    private static final String UUID = "org-01eac6d7-0d35-1812-a3ed-24aec4231940";
+
+    private final Map<String, Organization> organizations = new ConcurrentHashMap<>();
+    private OrganizationRepository repository;
+    private CerebrumRepository<Organization> typedRepository;
+    private OrganizationService service;
+    private Organization organization;
+    private Organization submitted;
+
+    @Setup
+    public void setUp()
+    {
+        organization = new Organization();
+        organization.setUuid(UUID);
+        organization.setName("Deutsches Elektronen-Synchrotron");
+        organization.setUrl("https://www.desy.de/");
+        organizations.put(UUID, organization);
+
+        submitted = new Organization();
+        submitted.setAbbreviation("DESY");
+
+        repository = (OrganizationRepository) Proxy.newProxyInstance(
+                OrganizationRepository.class.getClassLoader(),
+                new Class<?>[]{OrganizationRepository.class},
+                this::invokeRepository);
+        typedRepository = repository;
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        CerebrumPatchEngine patchEngine = new CerebrumPatchEngine(new ObjectMapper(), mappingContext, null);
+        service = new OrganizationService(
+                repository, null, null, null, null, new CerebrumProjector(mappingContext),
+                new CerebrumEntityCache(null, null, false, 0, Duration.ZERO), patchEngine);
+    }
+
+    @Benchmark
+    public Organization legacyFindByUuid() throws Exception
+    {
+        checkUuidValidity(UUID);
+        Method method = OrganizationRepository.class.getMethod("findByUuid", String.class);
+        //noinspection unchecked
+        return ((Optional<Organization>) method.invoke(repository, UUID)).orElseThrow();
+    }
+
+    @Benchmark
+    public Organization typedFindByUuid()
+    {
+        checkUuidValidity(UUID);
+        return typedRepository.findByUuid(UUID).orElseThrow();
+    }
+
+    @Benchmark
+    public Organization legacySave() throws Exception
+    {
+        Method method = OrganizationRepository.class.getMethod("save", Object.class);
+        return (Organization) method.invoke(repository, organization);
+    }
+
+    @Benchmark
+    public Organization typedSave()
+    {
+        return typedRepository.save(organization);
+    }
+
+    @Benchmark
+    public Organization legacyUpdate() throws Exception
+    {
+        checkUuidValidity(UUID);
+        Method find = OrganizationRepository.class.getMethod("findByUuid", String.class);
+        //noinspection unchecked
+        Organization retrieved = ((Optional<Organization>) find.invoke(repository, UUID)).orElseThrow();
+        for (Field field : Organization.class.getDeclaredFields()) {
+            if (field.getDeclaringClass() == Organization.class
+                    && Modifier.toString(field.getModifiers()).contains("private")) {
+                field.setAccessible(true);
+                Field submittedField = submitted.getClass().getDeclaredField(field.getName());
+                submittedField.setAccessible(true);
+                if (submittedField.get(submitted) != null) {
+                    field.set(retrieved, submittedField.get(submitted));
+                }
+                field.setAccessible(false);
+                submittedField.setAccessible(false);
+            }
+        }
+        Method save = OrganizationRepository.class.getMethod("save", Object.class);
+        return (Organization) save.invoke(repository, retrieved);
+    }
+
+    @Benchmark
+    public ResponseEntity<Organization> typedUpdate()
+    {
+        return service.updateEntity(UUID, submitted, repository, UriComponentsBuilder.newInstance());
+    }
+
+    private Object invokeRepository(Object proxy, Method method, Object[] args)
+    {
+        switch (method.getName()) {
+            case "findByUuid":
+            case "findById":
+                return Optional.ofNullable(organizations.get((String) args[0]));
+            case "existsById":
+                return organizations.containsKey((String) args[0]);
+            case "save":
+            case "insert":
+                Organization saved = (Organization) args[0];
+                organizations.put(saved.getUuid(), saved);
+                return saved;
+            case "deleteByUuid":
+                return organizations.remove((String) args[0]) == null ? 0L : 1L;
+            case "findAll":
+                return new ArrayList<>(organizations.values());
+            case "count":
+                return (long) organizations.size();
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "in-memory OrganizationRepository";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package de.helmholtz.marketplace.cerebrum.controller;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+import java.util.List;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumSearchIndex;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = {"cerebrum.bulk.chunk-size=2", "cerebrum.entity-cache.enabled=false",
+        "cerebrum.change-stream.enabled=false"})
+@AutoConfigureMockMvc
+@TestInstance(value = TestInstance.Lifecycle.PER_CLASS)
+class BulkImportControllerTest
+{
+    private static final String ORG_BULK_URI = "/api/v0/organizations:bulk";
+    private static final String SVC_BULK_URI = "/api/v0/services:bulk";
+    @Value("${cerebrum.test.oauth2-token}") private String TOKEN;
+    @Autowired private MockMvc mvc;
+    @MockBean private CerebrumMongoOperations mockMongoOperations;
+    @MockBean private CerebrumSearchIndex mockSearchIndex;
+
+    @Test void
+    givenNdjsonBody_whenPostRequestToOrganizationsBulk_thenChunkedUpsert_and_PerItemStatus() throws Exception
+    {
+        BulkWriteResult firstChunk = BulkWriteResult.acknowledged(0, 1, 0, 1,
+                Collections.singletonList(new BulkWriteUpsert(0, new BsonString("org-1"))));
+        BulkWriteResult secondChunk = BulkWriteResult.acknowledged(0, 0, 0, 0,
+                Collections.singletonList(new BulkWriteUpsert(0, new BsonString("org-3"))));
+        given(mockMongoOperations.upsertAll(anyList(), eq(Organization.class)))
+                .willReturn(firstChunk, secondChunk);
+
+        String body = "{\"name\": \"Karlsruher Institut fuer Technologie\", \"url\": \"http://www.kit.edu/\"}\n" +
+                "{\"name\": \"Forschungszentrum Juelich\", \"url\": \"https://www.fz-juelich.de/\"}\n" +
+                "{\"abbreviation\": \"DESY\"}\n" +
+                "{\"name\": \"GEOMAR\", \"url\": \"https://www.geomar.de/\"}\n";
+
+        mvc.perform(post(ORG_BULK_URI)
+                .header("Authorization", "Bearer " + TOKEN)
+                .contentType("application/x-ndjson")
+                .content(body))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[1].status").value("UPDATED"))
+                .andExpect(jsonPath("$[2].status").value("INVALID"))
+                .andExpect(jsonPath("$[3].status").value("CREATED"));
+
+        verify(mockMongoOperations, times(2)).upsertAll(anyList(), eq(Organization.class));
+    }
+
+    @Test void
+    givenServices_whenPostRequestToServicesBulk_thenWrittenServicesIndexed() throws Exception
+    {
+        BulkWriteResult result = BulkWriteResult.acknowledged(0, 1, 0, 1,
+                Collections.singletonList(new BulkWriteUpsert(0, new BsonString("svc-1"))));
+        given(mockMongoOperations.upsertAll(anyList(), eq(MarketService.class))).willReturn(result);
+
+        String body = "{\"name\": \"Sync+Share\"}\n{\"name\": \"Jupyter\"}\n";
+
+        mvc.perform(post(SVC_BULK_URI)
+                .header("Authorization", "Bearer " + TOKEN)
+                .contentType("application/x-ndjson")
+                .content(body))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[1].status").value("UPDATED"));
+
+        verify(mockSearchIndex, times(2)).put(any(MarketService.class));
+    }
+
+    @Test void
+    givenNoAuthToken_whenPostRequestToOrganizationsBulk_thenForbidden() throws Exception
+    {
+        mvc.perform(post(ORG_BULK_URI)
+                .contentType("application/json")
+                .content(List.of().toString()))
+
+                //then
+                .andExpect(status().isForbidden());
+    }
+}
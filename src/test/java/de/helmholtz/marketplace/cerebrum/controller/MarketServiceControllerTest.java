@@ -20,6 +20,9 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -30,13 +33,21 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
 import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
 import de.helmholtz.marketplace.cerebrum.repository.MarketServiceRepository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -52,7 +63,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @ExtendWith(SpringExtension.class)
 @AutoConfigureJsonTesters
-@SpringBootTest
+@SpringBootTest(properties = {"cerebrum.entity-cache.enabled=false", "cerebrum.change-stream.enabled=false"})
 @AutoConfigureMockMvc
 @TestInstance(value = TestInstance.Lifecycle.PER_CLASS)
 class MarketServiceControllerTest
@@ -63,6 +74,8 @@ class MarketServiceControllerTest
     private MockMvc mvc;
     @MockBean
     private MarketServiceRepository mockRepository;
+    @MockBean
+    private CerebrumMongoOperations mockMongoOperations;
     @Autowired private ObjectMapper objectMapper;
     private final List<MarketService> services = new ArrayList<>();
     private final MarketService singleService = createNewServiceWithUuiD(
@@ -210,6 +223,16 @@ class MarketServiceControllerTest
         verify(mockRepository, times(1)).findAll(pageable);
     }
 
+    @Test void
+    givenExpandOfNonReferenceProperty_whenGetRequestToServices_thenBadRequest() throws Exception
+    {
+        mvc.perform(get(SVC_API_URI).param("expand", "name"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]").value("Invalid property"));
+
+        verify(mockRepository, times(0)).findAll(any(Pageable.class));
+    }
+
     @Test void
     givenInvalidAcceptHeader_whenGetRequestToServices_thenNotAcceptable() throws Exception
     {
@@ -401,6 +424,35 @@ class MarketServiceControllerTest
     }
 
     //POST
+    @Test void
+    givenQuery_whenGetRequestToServicesSearch_thenRankedSliceWithNextLink() throws Exception
+    {
+        CerebrumKeysetSlice<MarketService> slice = new CerebrumKeysetSlice<>(
+                services.subList(0, 2), PageRequest.of(0, 2), "eyJzIjoic2NvcmUuZGVzYyJ9");
+        given(mockMongoOperations.search(eq("nulla"), any(Query.class), eq(2), isNull(), eq(MarketService.class)))
+                .willReturn(slice);
+
+        mvc.perform(get(SVC_API_URI + "/search").param("q", "nulla").param("size", "2"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.content[0].name").value(services.get(0).getName()))
+                .andExpect(jsonPath("$.content[0].description").doesNotExist())
+                .andExpect(jsonPath("$.next", containsString("after=eyJzIjoic2NvcmUuZGVzYyJ9")));
+    }
+
+    @Test void
+    givenBlankQuery_whenGetRequestToServicesSearch_thenBadRequest() throws Exception
+    {
+        MockHttpServletResponse response = mvc.perform(
+                get(SVC_API_URI + "/search").param("q", " "))
+                .andReturn().getResponse();
+
+        //then
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+    }
+
     @Test void
     givenValidMarketServiceWithoutUuid_whenPostRequestToServices_verifyOutput_and_businessLogicCall_thenCreated()
             throws Exception
@@ -751,6 +803,34 @@ class MarketServiceControllerTest
         verify(mockRepository, times(1)).findByUuid("svc-5189a7bc-d630-11ea-87d0-0242ac130003");
     }
 
+    @Test void
+    givenValidUuid_and_translatableJsonPatch_whenPatchRequestToServices_thenAtomicUpdate() throws Exception
+    {
+        //given
+        MarketService patchedService = createNewServiceWithUuiD(
+                "svc-5189a7bc-d630-11ea-87d0-0242ac130003",
+                "Treeflex 2.0",
+                "Nullam varius. Nulla facilisi.",
+                "https://independent.co.uk/ipsum/dolor/sit/amet/consectetuer.aspx");
+        given(mockMongoOperations.updateByUuid(
+                eq("svc-5189a7bc-d630-11ea-87d0-0242ac130003"), any(Criteria.class), any(Update.class), eq(MarketService.class)))
+                .willReturn(patchedService);
+
+        //when
+        mvc.perform(patch(SVC_API_URI + "/svc-5189a7bc-d630-11ea-87d0-0242ac130003")
+                .header("Authorization", "Bearer " + TOKEN)
+                .accept("application/json")
+                .contentType("application/json-patch+json").content(objectMapper.writeValueAsString(validJsonPatch)))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$['name']").value("Treeflex 2.0"));
+
+        verify(mockRepository, times(0)).save(any(MarketService.class));
+        verify(mockRepository, times(0)).findByUuid("svc-5189a7bc-d630-11ea-87d0-0242ac130003");
+    }
+
     @Test void
     givenValidUuid_and_invalidJsonPatch_whenPatchRequestToServices_thenBadRequest() throws Exception
     {
@@ -888,4 +968,92 @@ class MarketServiceControllerTest
                 //then
                 .andExpect(status().isForbidden());
     }
+
+    //service-provider
+    @Test void
+    givenExistingProvider_whenPostRequestToServiceProvider_thenAtomicAddToSet_and_Ok() throws Exception
+    {
+        given(mockMongoOperations.existsByUuid("org-5189a7bc-d630-11ea-87d0-0242ac130003", Organization.class))
+                .willReturn(true);
+        given(mockMongoOperations.addReference(
+                "svc-5189a7bc-d630-11ea-87d0-0242ac130003", "serviceProviders", MarketService.class,
+                "org-5189a7bc-d630-11ea-87d0-0242ac130003", Organization.class))
+                .willReturn(singleService);
+
+        mvc.perform(post(SVC_API_URI + "/svc-5189a7bc-d630-11ea-87d0-0242ac130003/provider")
+                .header("Authorization", "Bearer " + TOKEN)
+                .contentType("application/json")
+                .content("{\"uuid\": \"org-5189a7bc-d630-11ea-87d0-0242ac130003\"}"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['uuid']").value("svc-5189a7bc-d630-11ea-87d0-0242ac130003"));
+
+        verify(mockRepository, times(0)).save(any(MarketService.class));
+    }
+
+    @Test void
+    givenAlreadyLinkedProvider_whenPostRequestToServiceProvider_thenNoContent() throws Exception
+    {
+        given(mockMongoOperations.existsByUuid("org-5189a7bc-d630-11ea-87d0-0242ac130003", Organization.class))
+                .willReturn(true);
+        given(mockMongoOperations.existsByUuid("svc-5189a7bc-d630-11ea-87d0-0242ac130003", MarketService.class))
+                .willReturn(true);
+
+        mvc.perform(post(SVC_API_URI + "/svc-5189a7bc-d630-11ea-87d0-0242ac130003/provider")
+                .header("Authorization", "Bearer " + TOKEN)
+                .contentType("application/json")
+                .content("{\"uuid\": \"org-5189a7bc-d630-11ea-87d0-0242ac130003\"}"))
+
+                //then
+                .andExpect(status().isNoContent());
+
+        verify(mockRepository, times(0)).save(any(MarketService.class));
+    }
+
+    @Test void
+    givenUnknownProvider_whenPostRequestToServiceProvider_thenNotFound() throws Exception
+    {
+        mvc.perform(post(SVC_API_URI + "/svc-5189a7bc-d630-11ea-87d0-0242ac130003/provider")
+                .header("Authorization", "Bearer " + TOKEN)
+                .contentType("application/json")
+                .content("{\"uuid\": \"org-5189a7bc-d630-11ea-87d0-0242ac130003\"}"))
+
+                //then
+                .andExpect(status().isNotFound());
+    }
+
+    @Test void
+    givenMixedOperations_whenPostRequestToServiceProviderBatch_thenSingleWrite_and_PerUuidOutcome() throws Exception
+    {
+        String linked = "org-5189a7bc-d630-11ea-87d0-0242ac130001";
+        String known = "org-5189a7bc-d630-11ea-87d0-0242ac130002";
+        String unknown = "org-5189a7bc-d630-11ea-87d0-0242ac130003";
+        given(mockMongoOperations.findExistingUuids(anySet(), eq(Organization.class))).willReturn(Set.of(known));
+        given(mockMongoOperations.updateReferences(
+                eq("svc-5189a7bc-d630-11ea-87d0-0242ac130003"), eq("serviceProviders"), eq(MarketService.class),
+                anyCollection(), anyCollection(), eq(Organization.class)))
+                .willReturn(Set.of(linked));
+
+        mvc.perform(post(SVC_API_URI + "/svc-5189a7bc-d630-11ea-87d0-0242ac130003/provider/batch")
+                .header("Authorization", "Bearer " + TOKEN)
+                .contentType("application/json")
+                .content("[{\"op\": \"add\", \"uuid\": \"" + linked + "\"}, " +
+                        "{\"op\": \"add\", \"uuid\": \"" + known + "\"}, " +
+                        "{\"op\": \"add\", \"uuid\": \"" + unknown + "\"}, " +
+                        "{\"op\": \"remove\", \"uuid\": \"" + unknown + "\"}, " +
+                        "{\"op\": \"remove\", \"uuid\": \"abc\"}]"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ALREADY_PRESENT"))
+                .andExpect(jsonPath("$[1].status").value("ADDED"))
+                .andExpect(jsonPath("$[2].status").value("NOT_FOUND"))
+                .andExpect(jsonPath("$[3].status").value("NOT_PRESENT"))
+                .andExpect(jsonPath("$[4].status").value("INVALID_UUID"));
+
+        verify(mockMongoOperations, times(1)).updateReferences(
+                "svc-5189a7bc-d630-11ea-87d0-0242ac130003", "serviceProviders", MarketService.class,
+                Set.of(known), Set.of(unknown), Organization.class);
+    }
 }
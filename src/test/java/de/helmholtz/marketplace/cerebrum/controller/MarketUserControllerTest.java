@@ -53,7 +53,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @ExtendWith(SpringExtension.class)
 @AutoConfigureJsonTesters
-@SpringBootTest
+@SpringBootTest(properties = {"cerebrum.entity-cache.enabled=false", "cerebrum.change-stream.enabled=false"})
 @AutoConfigureMockMvc
 @TestInstance(value = TestInstance.Lifecycle.PER_CLASS)
 class MarketUserControllerTest
@@ -17,7 +17,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -28,14 +32,23 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
 import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumCountMode;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
 import de.helmholtz.marketplace.cerebrum.repository.OrganizationRepository;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -50,7 +63,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 @ExtendWith(SpringExtension.class)
 @AutoConfigureJsonTesters
-@SpringBootTest
+@SpringBootTest(properties = {"cerebrum.entity-cache.enabled=false", "cerebrum.change-stream.enabled=false"})
 @AutoConfigureMockMvc
 @TestInstance(value = Lifecycle.PER_CLASS)
 class OrganizationControllerTest
@@ -60,6 +73,7 @@ class OrganizationControllerTest
     @Value("${cerebrum.test.oauth2-token}") private String TOKEN;
     @Autowired private MockMvc mvc;
     @MockBean private OrganizationRepository mockRepository;
+    @MockBean private CerebrumMongoOperations mockMongoOperations;
     @Autowired private ObjectMapper objectMapper;
     private final List<Organization> listOrganisation = new ArrayList<>();
 
@@ -261,6 +275,109 @@ class OrganizationControllerTest
         assertThat(response.getHeader("content-type")).isNotEqualTo("application/json");
     }
 
+    @Test void
+    givenCursorPaging_whenGetRequestToOrganisations_thenSliceWithNextLink_and_noCount() throws Exception
+    {
+        Sort sort = Sort.by(new Sort.Order(Sort.Direction.ASC, "name"));
+        CerebrumKeysetSlice<Organization> slice = new CerebrumKeysetSlice<>(
+                listOrganisation.subList(0, 2), PageRequest.of(0, 2, sort), "eyJzIjoibmFtZS5hc2MifQ");
+        given(mockMongoOperations.findSlice(any(Query.class), eq(sort), eq(2), isNull(), eq(Organization.class)))
+                .willReturn(slice);
+
+        mvc.perform(get(ORG_API_URI).param("paging", "cursor").param("size", "2"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.after").value("eyJzIjoibmFtZS5hc2MifQ"))
+                .andExpect(jsonPath("$.next", containsString("after=eyJzIjoibmFtZS5hc2MifQ")))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+        verify(mockRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test void
+    givenCursorPaging_and_defaultSort_whenGetRequestToMembers_thenSortedByScreenName() throws Exception
+    {
+        Sort sort = Sort.by(new Sort.Order(Sort.Direction.ASC, "screenName"));
+        MarketUser member = new MarketUser();
+        member.setScreenName("glages0");
+        given(mockMongoOperations.findSlice(any(Query.class), eq(sort), eq(20), isNull(), eq(MarketUser.class)))
+                .willReturn(new CerebrumKeysetSlice<>(List.of(member), PageRequest.of(0, 20, sort), null));
+
+        mvc.perform(get(ORG_API_URI + "/org-5189a7bc-d630-11ea-87d0-0242ac130003/members")
+                .header("Authorization", "Bearer " + TOKEN)
+                .param("paging", "cursor"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].screenName").value("glages0"));
+    }
+
+    @Test void
+    givenCountNone_whenGetRequestToOrganisations_thenSliceWithoutTotal() throws Exception
+    {
+        Pageable pageable = PageRequest.of(
+                0,20, Sort.by(new Sort.Order(Sort.Direction.ASC, "name")));
+        given(mockMongoOperations.findPage(
+                any(Query.class), eq(pageable), eq(CerebrumCountMode.NONE), eq(Organization.class)))
+                .willReturn(new SliceImpl<>(listOrganisation, pageable, false));
+
+        mvc.perform(get(ORG_API_URI).param("count", "none"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(listOrganisation.size()))
+                .andExpect(jsonPath("$.last").value(true))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+        verify(mockRepository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test void
+    givenMalformedCursor_whenGetRequestToOrganisations_thenBadRequest() throws Exception
+    {
+        mvc.perform(get(ORG_API_URI).param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test void
+    givenFields_whenGetRequestToOrganisation_thenProjectedQuery_and_onlySelectedProperties() throws Exception
+    {
+        Organization kit = createNewOrganisationWithUuiD(
+                "Karlsruher Institut fuer Technologie",
+                "KIT",
+                "http://www.kit.edu/",
+                "http://www.kit.edu/img/intern/kit_logo_V2_de.svg",
+                "org-5189a7bc-d630-11ea-87d0-0242ac130003");
+        given(mockMongoOperations.findByUuid(
+                eq("org-5189a7bc-d630-11ea-87d0-0242ac130003"), any(Query.class), eq(Organization.class)))
+                .willReturn(kit);
+
+        mvc.perform(get(ORG_API_URI + "/org-5189a7bc-d630-11ea-87d0-0242ac130003")
+                .param("fields", "name,abbreviation"))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uuid").value("org-5189a7bc-d630-11ea-87d0-0242ac130003"))
+                .andExpect(jsonPath("$.name").value("Karlsruher Institut fuer Technologie"))
+                .andExpect(jsonPath("$.abbreviation").value("KIT"))
+                .andExpect(jsonPath("$.img").doesNotExist())
+                .andExpect(jsonPath("$.url").doesNotExist());
+        verify(mockMongoOperations, times(1)).findByUuid(
+                eq("org-5189a7bc-d630-11ea-87d0-0242ac130003"),
+                argThat(query -> query.getFieldsObject().keySet().equals(Set.of("name", "abbreviation", "uuid"))),
+                eq(Organization.class));
+        verify(mockRepository, never()).findByUuid(any());
+    }
+
+    @Test void
+    givenUnknownField_whenGetRequestToOrganisations_thenBadRequest() throws Exception
+    {
+        mvc.perform(get(ORG_API_URI).param("fields", "name,logo"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors[0]").value("Invalid property"));
+        verify(mockRepository, never()).findAll(any(Pageable.class));
+    }
+
     @Test void
     givenValidAcceptHeader_and_validUuid_whenGetRequestToOrganisation_verify_output_and_businessLogicCalls_thenOK()
             throws Exception
@@ -920,6 +1037,41 @@ class OrganizationControllerTest
         verify(mockRepository, times(1)).findByUuid("org-5189a7bc-d630-11ea-87d0-0242ac130003");
     }
 
+    @Test void
+    givenValidUuid_and_translatableJsonPatch_whenPatchRequestToOrganisations_thenAtomicUpdate() throws Exception
+    {
+        //given
+        Map<String, String> patch = new HashMap<>();
+        patch.put("op", "replace");
+        patch.put("path", "/name");
+        patch.put("value", "Karlsruher Institut three fuer Technologie");
+        Object[] validJsonPatch = {patch};
+
+        Organization newKit = createNewOrganisationWithUuiD(
+                "Karlsruher Institut three fuer Technologie",
+                "KI3T",
+                "http://www.kiiiit.edu/",
+                "http://www.kiiiit.edu/img/intern/kit_logo_V2_de.svg",
+                "org-5189a7bc-d630-11ea-87d0-0242ac130003");
+        given(mockMongoOperations.updateByUuid(
+                eq("org-5189a7bc-d630-11ea-87d0-0242ac130003"), any(Criteria.class), any(Update.class), eq(Organization.class)))
+                .willReturn(newKit);
+
+        //when
+        mvc.perform(patch(ORG_API_URI + "/org-5189a7bc-d630-11ea-87d0-0242ac130003")
+                .header("Authorization", "Bearer " + TOKEN)
+                .accept("application/json")
+                .contentType("application/json-patch+json").content(objectMapper.writeValueAsString(validJsonPatch)))
+
+                //then
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$['name']").value("Karlsruher Institut three fuer Technologie"));
+
+        verify(mockRepository, times(0)).save(any(Organization.class));
+        verify(mockRepository, times(0)).findByUuid("org-5189a7bc-d630-11ea-87d0-0242ac130003");
+    }
+
     @Test void
     givenValidUuid_and_invalidJsonPatch_whenPatchRequestToOrganisations_thenBadRequest() throws Exception
     {
@@ -942,6 +1094,39 @@ class OrganizationControllerTest
         verify(mockRepository, times(0)).findByUuid("org-5189a7bc-d630-11ea-87d0-0242ac130003");
     }
 
+    @Test void
+    givenValidUuid_and_unknownPathInJsonPatch_whenPatchRequestToOrganisations_thenBadRequest() throws Exception
+    {
+        //given
+        Map<String, String> patch = new HashMap<>();
+        patch.put("op", "replace");
+        patch.put("path", "/unknown");
+        patch.put("value", "KI3T");
+        Object[] jsonPatch = {patch};
+
+        Organization kit = createNewOrganisationWithUuiD(
+                "Karlsruher Institut fuer Technologie",
+                "KIT",
+                "http://www.kit.edu/",
+                "http://www.kit.edu/img/intern/kit_logo_V2_de.svg",
+                "org-5189a7bc-d630-11ea-87d0-0242ac130003");
+        given(mockRepository.findByUuid("org-5189a7bc-d630-11ea-87d0-0242ac130003"))
+                .willReturn(java.util.Optional.of(kit));
+
+        //when
+        mvc.perform(patch(ORG_API_URI + "/org-5189a7bc-d630-11ea-87d0-0242ac130003")
+                .header("Authorization", "Bearer " + TOKEN)
+                .accept("application/json")
+                .contentType("application/json-patch+json").content(objectMapper.writeValueAsString(jsonPatch)))
+
+                //then
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$.errors[0]").value("Invalid patch"));
+
+        verify(mockRepository, times(0)).save(any(Organization.class));
+    }
+
     @Test void
     givenInvalidUuid_and_validJsonPatch_whenPatchRequestToOrganisations_thenBadRequest() throws Exception
     {
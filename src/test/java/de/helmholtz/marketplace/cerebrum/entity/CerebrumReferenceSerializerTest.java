@@ -0,0 +1,48 @@
+package de.helmholtz.marketplace.cerebrum.entity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CerebrumReferenceSerializerTest
+{
+    private static final String UUID = "org-5189a7bc-d630-11ea-87d0-0242ac130003";
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test void
+    givenLink_whenSerialized_thenOnlyUuid_and_noRequestNeeded()
+    {
+        Organization provider = new Organization();
+        provider.setUuid(UUID);
+        provider.setLink(true);
+
+        JsonNode json = serviceWith(provider);
+
+        assertThat(json.path("serviceProviders").get(0).size()).isEqualTo(1);
+        assertThat(json.path("serviceProviders").get(0).path("uuid").asText()).isEqualTo(UUID);
+    }
+
+    @Test void
+    givenLoadedEntity_whenSerialized_thenInFull()
+    {
+        Organization provider = new Organization();
+        provider.setUuid(UUID);
+        provider.setName("Deutsches Elektronen-Synchrotron");
+
+        JsonNode json = serviceWith(provider);
+
+        assertThat(json.path("serviceProviders").get(0).path("name").asText())
+                .isEqualTo("Deutsches Elektronen-Synchrotron");
+        assertThat(json.path("serviceProviders").get(0).has("link")).isFalse();
+    }
+
+    private JsonNode serviceWith(Organization provider)
+    {
+        MarketService service = new MarketService();
+        service.setUuid(null);
+        service.addProvider(provider);
+        return objectMapper.valueToTree(service);
+    }
+}
@@ -0,0 +1,97 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CerebrumChangeStreamListenerTest
+{
+    private static final String UUID = "org-5189a7bc-d630-11ea-87d0-0242ac130003";
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CerebrumChangeStreamListener listener;
+
+    @BeforeEach
+    void setUp()
+    {
+        given(mongoTemplate.getCollectionName(MarketService.class)).willReturn("marketService");
+        given(mongoTemplate.getCollectionName(Organization.class)).willReturn("organization");
+        given(mongoTemplate.getCollectionName(MarketUser.class)).willReturn("marketUser");
+        given(mongoTemplate.getCollectionName(Person.class)).willReturn("person");
+        listener = new CerebrumChangeStreamListener(mongoTemplate, eventPublisher, meterRegistry, false, "node-1");
+    }
+
+    @Test void
+    givenUpdate_whenApply_thenEntityInvalidated_and_lagRecorded()
+    {
+        int fiveSecondsAgo = (int) (System.currentTimeMillis() / 1000) - 5;
+
+        assertThat(listener.apply(change(OperationType.UPDATE, "organization", UUID, fiveSecondsAgo))).isTrue();
+
+        CerebrumInvalidationEvent event = publishedEvents(1)[0];
+        assertThat(event.getCollectionName()).isEqualTo("organization");
+        assertThat(event.getUuid()).isEqualTo(UUID);
+        assertThat(meterRegistry.get("cerebrum.change-stream.lag").timeGauge().value(TimeUnit.SECONDS))
+                .isGreaterThanOrEqualTo(4);
+    }
+
+    @Test void
+    givenDrop_whenApply_thenCollectionInvalidated()
+    {
+        assertThat(listener.apply(change(OperationType.DROP, "marketService", null, 0))).isTrue();
+
+        CerebrumInvalidationEvent event = publishedEvents(1)[0];
+        assertThat(event.getCollectionName()).isEqualTo("marketService");
+        assertThat(event.getUuid()).isNull();
+    }
+
+    @Test void
+    givenInvalidate_whenApply_thenEveryCollectionInvalidated_and_streamNotResumable()
+    {
+        assertThat(listener.apply(change(OperationType.INVALIDATE, null, null, 0))).isFalse();
+
+        assertThat(publishedEvents(4)).extracting(CerebrumInvalidationEvent::getCollectionName)
+                .containsExactlyInAnyOrder("marketService", "organization", "marketUser", "person");
+    }
+
+    private CerebrumInvalidationEvent[] publishedEvents(int count)
+    {
+        ArgumentCaptor<CerebrumInvalidationEvent> events = ArgumentCaptor.forClass(CerebrumInvalidationEvent.class);
+        verify(eventPublisher, times(count)).publishEvent(events.capture());
+        return events.getAllValues().toArray(new CerebrumInvalidationEvent[0]);
+    }
+
+    private static ChangeStreamDocument<Document> change(OperationType type, String collectionName,
+                                                         String uuid, int clusterSeconds)
+    {
+        BsonDocument namespace = collectionName == null ? null
+                : new BsonDocument("db", new BsonString("cerebrum")).append("coll", new BsonString(collectionName));
+        BsonDocument documentKey = uuid == null ? null : new BsonDocument("_id", new BsonString(uuid));
+        return new ChangeStreamDocument<>(type, new BsonDocument(), namespace, null, null, documentKey,
+                clusterSeconds == 0 ? null : new BsonTimestamp(clusterSeconds, 1), null, null, null);
+    }
+}
@@ -0,0 +1,87 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CerebrumEntityCacheTest
+{
+    private static final String UUID = "org-5189a7bc-d630-11ea-87d0-0242ac130003";
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MongoConverter converter = mock(MongoConverter.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    @SuppressWarnings("unchecked")
+    private final FindIterable<Document> found = mock(FindIterable.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Document document = new Document("_id", UUID).append("name", "KIT");
+    private final Organization kit = new Organization();
+
+    @BeforeEach
+    void setUp()
+    {
+        given(mongoTemplate.getCollectionName(Organization.class)).willReturn("organization");
+        given(mongoTemplate.getCollection("organization")).willReturn(collection);
+        given(mongoTemplate.getConverter()).willReturn(converter);
+        given(collection.find(any(Bson.class))).willReturn(found);
+        given(found.first()).willReturn(document);
+        given(converter.read(Organization.class, document)).willReturn(kit);
+    }
+
+    @Test void
+    givenCachedDocument_whenFindByUuid_thenNoRead_and_hitCounted()
+    {
+        CerebrumEntityCache cache = new CerebrumEntityCache(mongoTemplate, meterRegistry, true, 100, Duration.ofMinutes(1));
+
+        assertThat(cache.findByUuid(UUID, Organization.class, Optional::empty)).contains(kit);
+        assertThat(cache.findByUuid(UUID, Organization.class, Optional::empty)).contains(kit);
+
+        verify(collection, times(1)).find(any(Bson.class));
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "organization").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test void
+    givenInvalidatedEntity_whenFindByUuid_thenDocumentReadAgain()
+    {
+        CerebrumEntityCache cache = new CerebrumEntityCache(mongoTemplate, meterRegistry, true, 100, Duration.ofMinutes(1));
+
+        cache.findByUuid(UUID, Organization.class, Optional::empty);
+        cache.invalidate(Organization.class, UUID);
+        cache.findByUuid(UUID, Organization.class, Optional::empty);
+
+        verify(collection, times(2)).find(any(Bson.class));
+    }
+
+    @Test void
+    givenDisabledCache_whenFindByUuid_thenReadBySupplier()
+    {
+        CerebrumEntityCache cache = new CerebrumEntityCache(mongoTemplate, meterRegistry, false, 100, Duration.ofMinutes(1));
+
+        assertThat(cache.findByUuid(UUID, Organization.class, () -> Optional.of(kit))).contains(kit);
+
+        verify(collection, never()).find(any(Bson.class));
+        verify(converter, never()).read(eq(Organization.class), any(Document.class));
+    }
+}
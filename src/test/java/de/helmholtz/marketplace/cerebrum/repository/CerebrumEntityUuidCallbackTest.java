@@ -0,0 +1,32 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.junit.jupiter.api.Test;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CerebrumEntityUuidCallbackTest
+{
+    private static final String UUID = "org-5189a7bc-d630-11ea-87d0-0242ac130003";
+    private final CerebrumEntityUuidCallback callback = new CerebrumEntityUuidCallback();
+
+    @Test void
+    givenNewEntity_thenNoUuidUntilConverted()
+    {
+        MarketService service = new MarketService();
+
+        assertThat(service.getUuid()).isNull();
+        assertThat(callback.onBeforeConvert(service, "marketService").getUuid()).startsWith("svc-");
+    }
+
+    @Test void
+    givenEntityWithUuid_whenConverted_thenUuidKept()
+    {
+        Organization organization = new Organization();
+        organization.setUuid(UUID);
+
+        assertThat(callback.onBeforeConvert(organization, "organization").getUuid()).isEqualTo(UUID);
+    }
+}
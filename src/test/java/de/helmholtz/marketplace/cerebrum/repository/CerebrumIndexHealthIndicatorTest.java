@@ -0,0 +1,49 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class CerebrumIndexHealthIndicatorTest
+{
+    private final CerebrumIndexManager indexManager = mock(CerebrumIndexManager.class);
+    private final CerebrumIndexHealthIndicator healthIndicator = new CerebrumIndexHealthIndicator(indexManager);
+
+    @Test void
+    givenPendingVerification_whenHealth_thenUnknown()
+    {
+        given(indexManager.getReport()).willReturn(CerebrumIndexReport.pending());
+
+        assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.UNKNOWN);
+    }
+
+    @Test void
+    givenAllIndexesPresent_whenHealth_thenUp()
+    {
+        given(indexManager.getReport()).willReturn(
+                CerebrumIndexReport.verified(Collections.emptyMap(), Collections.emptyMap()));
+
+        assertThat(healthIndicator.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test void
+    givenCollectionScan_whenHealth_thenDegraded_and_queryReported()
+    {
+        Map<String, List<String>> scans = Map.of("marketUser", List.of("sub"));
+        given(indexManager.getReport()).willReturn(
+                CerebrumIndexReport.verified(Map.of("marketUser", List.of("sub_1")), scans));
+
+        Health health = healthIndicator.health();
+
+        assertThat(health.getStatus()).isEqualTo(CerebrumIndexHealthIndicator.DEGRADED);
+        assertThat(health.getDetails()).containsEntry("collectionScans", scans);
+    }
+}
@@ -0,0 +1,129 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+class CerebrumIndexManagerTest
+{
+    private static final String TEXT_INDEX = "MarketService_TextIndex";
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MongoMappingContext mappingContext = new MongoMappingContext();
+    private final Map<Class<?>, IndexOperations> indexOperations = new HashMap<>();
+
+    @BeforeEach void
+    setUp()
+    {
+        MongoDatabase database = mock(MongoDatabase.class);
+        given(mongoTemplate.getDb()).willReturn(database);
+        given(database.runCommand(any(Bson.class))).willReturn(new Document("queryPlanner",
+                new Document("winningPlan", new Document("stage", "IXSCAN"))));
+
+        /* every declared index exists */
+        IndexResolver indexResolver = IndexResolver.create(mappingContext);
+        for (Class<?> entityClass : List.of(Organization.class, MarketService.class, MarketUser.class, Person.class)) {
+            List<IndexInfo> indexes = new ArrayList<>();
+            for (IndexDefinition definition : indexResolver.resolveIndexFor(entityClass)) {
+                indexes.add(reported(definition.getIndexKeys(), definition.getIndexOptions().getString("name")));
+            }
+            IndexOperations operations = mock(IndexOperations.class);
+            given(operations.getIndexInfo()).willReturn(indexes);
+            given(mongoTemplate.indexOps(entityClass)).willReturn(operations);
+            given(mongoTemplate.getCollectionName(entityClass)).willReturn(entityClass.getSimpleName());
+            indexOperations.put(entityClass, operations);
+        }
+    }
+
+    @Test void
+    givenAllIndexesIncludingText_whenVerify_thenUp()
+    {
+        CerebrumIndexManager indexManager = indexManager(false);
+
+        indexManager.verify();
+
+        assertThat(new CerebrumIndexHealthIndicator(indexManager).health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test void
+    givenTextIndexOverOtherFields_whenVerify_thenDegraded_and_textIndexMissing()
+    {
+        given(indexOperations.get(MarketService.class).getIndexInfo()).willReturn(List.of(
+                reported(new Document("name", "text").append("description", "text"), TEXT_INDEX)));
+        CerebrumIndexManager indexManager = indexManager(false);
+
+        indexManager.verify();
+
+        assertThat(new CerebrumIndexHealthIndicator(indexManager).health().getStatus())
+                .isEqualTo(CerebrumIndexHealthIndicator.DEGRADED);
+        assertThat(indexManager.getReport().getMissingIndexes().get("MarketService")).contains(TEXT_INDEX);
+    }
+
+    @Test void
+    givenTextIndexOverOtherFields_and_creationEnabled_whenVerify_thenTextIndexReplaced()
+    {
+        IndexOperations operations = indexOperations.get(MarketService.class);
+        given(operations.getIndexInfo()).willReturn(List.of(
+                reported(new Document("name", "text").append("description", "text"), TEXT_INDEX)));
+
+        indexManager(true).verify();
+
+        InOrder inOrder = inOrder(operations);
+        inOrder.verify(operations).dropIndex(TEXT_INDEX);
+        inOrder.verify(operations).ensureIndex(argThat(definition ->
+                "text".equals(definition.getIndexKeys().get("targetGroup"))));
+    }
+
+    private CerebrumIndexManager indexManager(boolean createIndexes)
+    {
+        return new CerebrumIndexManager(mongoTemplate, mappingContext, new SyncTaskExecutor(), createIndexes);
+    }
+
+    /* as listIndexes reports an index: a text index is keyed _fts and _ftsx, its fields listed in the weights */
+    private static IndexInfo reported(Document keys, String name)
+    {
+        Document key = new Document();
+        Document weights = new Document();
+        keys.forEach((field, direction) -> {
+            if ("text".equals(direction)) {
+                weights.append(field, 1);
+            } else {
+                key.append(field, direction);
+            }
+        });
+        Document index = new Document("name", name);
+        if (!weights.isEmpty()) {
+            key.append("_fts", "text").append("_ftsx", 1);
+            index.append("weights", weights);
+        }
+        return IndexInfo.indexInfoOf(index.append("key", key));
+    }
+}
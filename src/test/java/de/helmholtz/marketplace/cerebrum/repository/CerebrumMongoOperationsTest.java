@@ -0,0 +1,112 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidCursorException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class CerebrumMongoOperationsTest
+{
+    private static final String UUID = "svc-5189a7bc-d630-11ea-87d0-0242ac130003";
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final CerebrumMongoOperations mongoOperations = new CerebrumMongoOperations(mongoTemplate, null);
+
+    @BeforeEach
+    void setUp()
+    {
+        MappingMongoConverter converter =
+                new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        given(mongoTemplate.getConverter()).willReturn(converter);
+        given(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MarketService.class))
+                .willReturn(bulkOperations);
+    }
+
+    @Test void
+    givenNewService_whenUpsertAll_thenCreatedDateWrittenOnInsert()
+    {
+        long before = System.currentTimeMillis();
+
+        Document update = upsert(service(null));
+
+        assertThat(update.get("$setOnInsert", Document.class).getLong("createdDate"))
+                .isGreaterThanOrEqualTo(before);
+        assertThat(update.get("$set", Document.class).getLong("lastModifiedDate"))
+                .isGreaterThanOrEqualTo(before);
+    }
+
+    @Test void
+    givenExistingService_whenUpsertAll_thenCreatedDateKept()
+    {
+        Document update = upsert(service(UUID));
+
+        assertThat(update.get("$set", Document.class))
+                .containsEntry("name", "Sync+Share")
+                .doesNotContainKeys("createdDate", "_id");
+        assertThat(update.get("$setOnInsert", Document.class)).containsOnlyKeys("createdDate");
+        assertThat(update.get("$unset", Document.class)).containsKey("description");
+    }
+
+    @Test void
+    givenScreenNameSort_whenFindSlice_thenUuidAppendedAsTiebreaker()
+    {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+
+        mongoOperations.findSlice(new Query(), Sort.by(Sort.Order.asc("screenName")), 20, null, MarketUser.class);
+
+        verify(mongoTemplate).find(query.capture(), eq(MarketUser.class));
+        assertThat(query.getValue().getSortObject())
+                .isEqualTo(new Document("screenName", 1).append("uuid", 1));
+    }
+
+    @Test void
+    givenSearchIndexCursor_whenSearch_thenRejected()
+    {
+        CerebrumCursor cursor = new CerebrumCursor(
+                List.of(Sort.Order.desc("relevance"), Sort.Order.asc("uuid")), List.of(15.0, UUID));
+
+        assertThatExceptionOfType(CerebrumInvalidCursorException.class).isThrownBy(
+                () -> mongoOperations.search("cloud", new Query(), 10, cursor, MarketService.class));
+    }
+
+    private Document upsert(MarketService service)
+    {
+        mongoOperations.upsertAll(List.of(service), MarketService.class);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations).upsert(any(Query.class), update.capture());
+        verify(bulkOperations).execute();
+        return update.getValue().getUpdateObject();
+    }
+
+    private static MarketService service(String uuid)
+    {
+        MarketService service = new MarketService();
+        service.setUuid(uuid);
+        service.setName("Sync+Share");
+        return service;
+    }
+}
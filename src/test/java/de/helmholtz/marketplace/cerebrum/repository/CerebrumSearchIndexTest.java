@@ -0,0 +1,221 @@
+package de.helmholtz.marketplace.cerebrum.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import de.helmholtz.marketplace.cerebrum.dto.CerebrumKeysetSlice;
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.errorhandling.exception.CerebrumInvalidCursorException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class CerebrumSearchIndexTest
+{
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<MarketService> services = new ArrayList<>();
+    private final CerebrumSearchIndex searchIndex =
+            new CerebrumSearchIndex(mongoTemplate, Runnable::run, meterRegistry, true);
+
+    @BeforeEach
+    void setUp()
+    {
+        services.add(service("Sync+Share", "Cloud storage for researchers", "cloud"));
+        services.add(service("HIFIS Cloud", "Sharing platform", "storage"));
+        services.add(service("Jupyter", "Notebooks in the browser", "analysis"));
+        services.get(2).setDescription("Interactive computing for data science");
+        services.get(2).addTarget("Data scientists");
+        given(mongoTemplate.stream(any(Query.class), eq(MarketService.class)))
+                .willAnswer(invocation -> iterator(services));
+        given(mongoTemplate.find(any(Query.class), eq(MarketService.class))).willReturn(services);
+    }
+
+    @Test void
+    givenIndexNotBuilt_whenSearch_thenNull()
+    {
+        assertThat(searchIndex.search("cloud", new Query(), 10, null)).isNull();
+    }
+
+    @Test void
+    givenWordInNameAndTags_whenSearch_thenNameMatchRankedFirst()
+    {
+        searchIndex.rebuild();
+
+        assertThat(names(searchIndex.search("cloud", new Query(), 10, null)))
+                .containsExactly("HIFIS Cloud", "Sync+Share");
+    }
+
+    @Test void
+    givenPrefixOrTypo_whenSearch_thenMatched()
+    {
+        searchIndex.rebuild();
+
+        assertThat(names(searchIndex.search("jup", new Query(), 10, null))).containsExactly("Jupyter");
+        assertThat(names(searchIndex.search("noteboks", new Query(), 10, null))).containsExactly("Jupyter");
+    }
+
+    @Test void
+    givenSeveralWords_whenSearch_thenEveryWordMatched()
+    {
+        searchIndex.rebuild();
+
+        assertThat(names(searchIndex.search("cloud researchers", new Query(), 10, null)))
+                .containsExactly("Sync+Share");
+    }
+
+    @Test void
+    givenWordInDescription_whenSearch_thenMatched()
+    {
+        searchIndex.rebuild();
+
+        assertThat(names(searchIndex.search("interactive", new Query(), 10, null))).containsExactly("Jupyter");
+    }
+
+    @Test void
+    givenWordInTargetGroup_whenSearch_thenMatched()
+    {
+        searchIndex.rebuild();
+
+        assertThat(names(searchIndex.search("scientists", new Query(), 10, null))).containsExactly("Jupyter");
+    }
+
+    @Test void
+    givenExcludedWord_whenSearch_thenServicesContainingItLeftOut()
+    {
+        searchIndex.rebuild();
+
+        assertThat(names(searchIndex.search("cloud -researchers", new Query(), 10, null)))
+                .containsExactly("HIFIS Cloud");
+    }
+
+    @Test void
+    givenQuotedPhrase_whenSearch_thenLeftToTextIndex()
+    {
+        searchIndex.rebuild();
+
+        assertThat(searchIndex.search("\"cloud storage\"", new Query(), 10, null)).isNull();
+    }
+
+    @Test void
+    givenTextIndexCursor_whenSearch_thenRejected()
+    {
+        searchIndex.rebuild();
+        CerebrumCursor cursor = new CerebrumCursor(
+                List.of(Sort.Order.desc("score"), Sort.Order.asc("uuid")), List.of(1.5, "svc-0"));
+
+        assertThatExceptionOfType(CerebrumInvalidCursorException.class).isThrownBy(
+                () -> searchIndex.search("cloud", new Query(), 10, cursor));
+    }
+
+    @Test void
+    givenCursor_whenSearch_thenFollowingPage()
+    {
+        searchIndex.rebuild();
+
+        CerebrumKeysetSlice<MarketService> first = searchIndex.search("cloud", new Query(), 1, null);
+        CerebrumKeysetSlice<MarketService> second = searchIndex.search(
+                "cloud", new Query(), 1, CerebrumCursor.decode(first.getAfter()));
+
+        assertThat(names(first)).containsExactly("HIFIS Cloud");
+        assertThat(names(second)).containsExactly("Sync+Share");
+        assertThat(second.getAfter()).isNull();
+    }
+
+    @Test void
+    givenWrites_whenSearch_thenIndexCurrent()
+    {
+        searchIndex.rebuild();
+        MarketService gitlab = service("GitLab", "Source code hosting", "git");
+        services.add(gitlab);
+
+        searchIndex.put(gitlab);
+        searchIndex.remove(services.get(0).getUuid());
+
+        assertThat(names(searchIndex.search("gitlab", new Query(), 10, null))).containsExactly("GitLab");
+        assertThat(names(searchIndex.search("researchers", new Query(), 10, null))).isEmpty();
+    }
+
+    @Test void
+    givenManyRemovals_thenIdsOfRemovedServicesReleased()
+    {
+        searchIndex.rebuild();
+        double built = meterRegistry.get("cerebrum.search-index.memory").gauge().value();
+
+        for (int i = 0; i < 100; i++) {
+            MarketService temporary = service("Temporary " + i, "Short lived", "ephemeral");
+            searchIndex.put(temporary);
+            searchIndex.remove(temporary.getUuid());
+        }
+
+        assertThat(meterRegistry.get("cerebrum.search-index.memory").gauge().value())
+                .isLessThanOrEqualTo(built + 8 * services.size());
+        assertThat(names(searchIndex.search("cloud", new Query(), 10, null)))
+                .containsExactly("HIFIS Cloud", "Sync+Share");
+    }
+
+    @Test void
+    givenBuiltIndex_thenFootprintAndRebuildTimePublished()
+    {
+        searchIndex.rebuild();
+
+        assertThat(meterRegistry.get("cerebrum.search-index.memory").gauge().value()).isPositive();
+        assertThat(meterRegistry.get("cerebrum.search-index.documents").gauge().value()).isEqualTo(3);
+        assertThat(meterRegistry.get("cerebrum.search-index.rebuild").timer().count()).isEqualTo(1);
+    }
+
+    private static MarketService service(String name, String summary, String tag)
+    {
+        MarketService service = new MarketService();
+        service.setUuid(null);
+        service.setName(name);
+        service.setSummary(summary);
+        service.addTag(tag);
+        return service;
+    }
+
+    private static List<String> names(CerebrumKeysetSlice<MarketService> slice)
+    {
+        List<String> names = new ArrayList<>();
+        slice.forEach(service -> names.add(service.getName()));
+        return names;
+    }
+
+    private static CloseableIterator<MarketService> iterator(List<MarketService> services)
+    {
+        Iterator<MarketService> iterator = new ArrayList<>(services).iterator();
+        return new CloseableIterator<>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public MarketService next()
+            {
+                return iterator.next();
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.json.AutoConfigureJsonTesters;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -12,12 +13,17 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.lang.reflect.Method;
+import java.util.Optional;
 
-import de.helmholtz.marketplace.cerebrum.repository.MarketUserRepository;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.PersonRepository;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
 import de.helmholtz.marketplace.cerebrum.service.common.CerebrumServiceBase;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.BDDMockito.given;
 
 /**
  * Existing tests covered most of CerebrumBaseService.class
@@ -25,60 +31,58 @@ import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
  */
 @ExtendWith(SpringExtension.class)
 @AutoConfigureJsonTesters
-@SpringBootTest
+@SpringBootTest(properties = {"cerebrum.entity-cache.enabled=false", "cerebrum.change-stream.enabled=false"})
 @AutoConfigureMockMvc
 @TestInstance(value = TestInstance.Lifecycle.PER_CLASS)
 class CerebrumBaseServiceTest
 {
-    private class CerebrumBaseServiceStub extends CerebrumServiceBase
+    private static class CerebrumBaseServiceStub extends CerebrumServiceBase<Person, PersonRepository>
     {
-        protected CerebrumBaseServiceStub()
+        protected CerebrumBaseServiceStub(CerebrumEntityCache entityCache, CerebrumPatchEngine patchEngine)
         {
-            super(String.class, MarketUserRepository.class);
-        }
-
-        public Method testForUnknownRepositoryMethod()
-        {
-            return repositoryMethod("unknownMethod", String.class);
-        }
-
-        public Method testForUnknownEntityMethod()
-        {
-            return entityMethod("unknownMethod", String.class);
+            super(Person.class, entityCache, patchEngine);
+            registerFinder("lastName", (repository, lastName) ->
+                    Optional.ofNullable(repository.findByFirstNameAndLastName("Paul", lastName)));
         }
     }
 
-    @MockBean private MarketUserRepository mockRepository;
+    @MockBean private PersonRepository mockRepository;
+    @Autowired private CerebrumEntityCache entityCache;
+    @Autowired private CerebrumPatchEngine patchEngine;
     private CerebrumBaseServiceStub cerebrumBaseServiceStub;
 
     @BeforeAll
     public void before()
     {
-        cerebrumBaseServiceStub = new CerebrumBaseServiceStub();
+        cerebrumBaseServiceStub = new CerebrumBaseServiceStub(entityCache, patchEngine);
     }
 
     @Test void
-    given_unknownEntityClass_when_create_is_call_thenReturn_ResponseStatusException()
+    given_entityWithoutApiPath_when_create_is_call_thenReturn_ResponseStatusException()
     {
         UriComponentsBuilder builder = UriComponentsBuilder.newInstance();
         UriComponentsBuilder uri = builder.scheme("https").host("example.com");
         assertThatExceptionOfType(ResponseStatusException.class).isThrownBy(() ->
-                cerebrumBaseServiceStub.createEntity("welcome", mockRepository, uri));
+                cerebrumBaseServiceStub.createEntity(new Person(), mockRepository, uri));
     }
 
     @Test void
-    givenUnknownRepositoryMethod_when_the_method_is_call_thenReturn_ResponseStatusException()
+    givenUnknownAttribute_when_getEntity_is_call_thenReturn_ResponseStatusException()
     {
         assertThatExceptionOfType(
                 ResponseStatusException.class).isThrownBy(
-                        () -> cerebrumBaseServiceStub.testForUnknownRepositoryMethod());
+                        () -> cerebrumBaseServiceStub.getEntity("unknownAttribute", "value", mockRepository));
     }
 
     @Test void
-    givenUnknownEntityMethod_when_the_method_is_call_thenReturn_ResponseStatusException()
+    givenRegisteredAttribute_when_getEntity_is_call_thenReturn_entity()
     {
-        assertThatExceptionOfType(
-                ResponseStatusException.class).isThrownBy(
-                () -> cerebrumBaseServiceStub.testForUnknownEntityMethod());
+        Person person = new Person();
+        person.setFirstName("Paul");
+        person.setLastName("Miller");
+        given(mockRepository.findByFirstNameAndLastName("Paul", "Miller")).willReturn(person);
+
+        assertThat(cerebrumBaseServiceStub.getEntity("lastName", "Miller", mockRepository))
+                .isSameAs(person);
     }
-}
\ No newline at end of file
+}
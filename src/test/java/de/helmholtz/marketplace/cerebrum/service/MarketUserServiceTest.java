@@ -0,0 +1,129 @@
+package de.helmholtz.marketplace.cerebrum.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.function.Supplier;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketUser;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumEntityCache;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumMongoOperations;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumProjector;
+import de.helmholtz.marketplace.cerebrum.repository.CerebrumReferenceLoader;
+import de.helmholtz.marketplace.cerebrum.repository.MarketUserRepository;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchEngine;
+import de.helmholtz.marketplace.cerebrum.utils.CerebrumEntityUuidGenerator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+class MarketUserServiceTest
+{
+    private static final String SUB = "110248495921238986420";
+    private static final String KNOWN_PERSON = "prn-5189a7bc-d630-11ea-87d0-0242ac130003";
+    private final MarketUserRepository marketUserRepository = mock(MarketUserRepository.class);
+    private final CerebrumMongoOperations mongoOperations = mock(CerebrumMongoOperations.class);
+    private final CerebrumReferenceLoader referenceLoader = mock(CerebrumReferenceLoader.class);
+    private MarketUserService marketUserService;
+
+    @BeforeEach
+    void setUp()
+    {
+        given(referenceLoader.loadOne(any(), eq(MarketUser.class), isNull()))
+                .willAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        marketUserService = new MarketUserService(marketUserRepository, mongoOperations,
+                referenceLoader, mock(CerebrumProjector.class), mock(CerebrumEntityCache.class),
+                mock(CerebrumPatchEngine.class));
+    }
+
+    @Test void
+    givenKnownSub_whenProvisionUser_thenTwoOperations()
+    {
+        Person profile = new Person();
+        profile.setUuid(KNOWN_PERSON);
+        given(mongoOperations.findOrInsert(any(Query.class), any(Update.class), eq(Person.class)))
+                .willReturn(profile);
+        MarketUser known = new MarketUser();
+        given(mongoOperations.findOrInsert(any(Query.class), any(Update.class), eq(MarketUser.class)))
+                .willReturn(known);
+
+        assertThat(marketUserService.provisionUser(SUB, "Garreth", "Lages", "glages0@tmall.com"))
+                .isSameAs(known);
+
+        verify(mongoOperations).findOrInsert(any(Query.class), any(Update.class), eq(Person.class));
+        verify(mongoOperations).referenceTo(KNOWN_PERSON, Person.class);
+        verify(mongoOperations).findOrInsert(any(Query.class), any(Update.class), eq(MarketUser.class));
+        verifyNoMoreInteractions(mongoOperations);
+        verifyNoInteractions(marketUserRepository);
+    }
+
+    @Test void
+    givenNewSub_whenProvisionUser_thenProfileInsertedBeforeUser()
+    {
+        given(mongoOperations.findOrInsert(any(Query.class), any(Update.class), eq(Person.class)))
+                .willAnswer(invocation -> {
+                    Person person = new Person();
+                    person.setUuid(insertedUuid(invocation.getArgument(1)));
+                    return person;
+                });
+        given(mongoOperations.findOrInsert(any(Query.class), any(Update.class), eq(MarketUser.class)))
+                .willAnswer(invocation -> {
+                    MarketUser user = new MarketUser();
+                    user.setUuid(insertedUuid(invocation.getArgument(1)));
+                    return user;
+                });
+
+        MarketUser user = marketUserService.provisionUser(SUB, "Garreth", "Lages", "glages0@tmall.com");
+
+        assertThat(user.getUuid()).isEqualTo(MarketUserService.uuidOf("usr", SUB));
+        InOrder inOrder = inOrder(mongoOperations);
+        inOrder.verify(mongoOperations).findOrInsert(any(Query.class), any(Update.class), eq(Person.class));
+        inOrder.verify(mongoOperations).referenceTo(MarketUserService.uuidOf("prn", SUB), Person.class);
+        inOrder.verify(mongoOperations).findOrInsert(any(Query.class), any(Update.class), eq(MarketUser.class));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    @Test void
+    givenNewSub_and_personOfThatName_whenProvisionUser_thenProfileLinkedToPerson()
+    {
+        Person known = new Person();
+        known.setUuid(KNOWN_PERSON);
+        given(mongoOperations.findOrInsert(any(Query.class), any(Update.class), eq(Person.class)))
+                .willReturn(known);
+
+        marketUserService.provisionUser(SUB, "Garreth", "Lages", null);
+
+        verify(mongoOperations).referenceTo(KNOWN_PERSON, Person.class);
+        verify(mongoOperations, never()).updateByUuid(anyString(), any(), any(Update.class), eq(MarketUser.class));
+    }
+
+    @Test void
+    givenSub_whenUuidOf_thenStableAndValid()
+    {
+        assertThat(MarketUserService.uuidOf("prn", SUB))
+                .isEqualTo(MarketUserService.uuidOf("prn", SUB))
+                .isNotEqualTo(MarketUserService.uuidOf("prn", "110248495921238986421"));
+        assertThat(CerebrumEntityUuidGenerator.isValid(MarketUserService.uuidOf("prn", SUB))).isTrue();
+        assertThat(CerebrumEntityUuidGenerator.isValid(MarketUserService.uuidOf("usr", SUB))).isTrue();
+    }
+
+    private static String insertedUuid(Update update)
+    {
+        return update.getUpdateObject().get("$setOnInsert", Document.class).getString("uuid");
+    }
+}
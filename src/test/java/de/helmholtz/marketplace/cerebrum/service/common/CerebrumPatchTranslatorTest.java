@@ -0,0 +1,98 @@
+package de.helmholtz.marketplace.cerebrum.service.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.List;
+
+import de.helmholtz.marketplace.cerebrum.entity.MarketService;
+import de.helmholtz.marketplace.cerebrum.entity.Organization;
+import de.helmholtz.marketplace.cerebrum.entity.Person;
+import de.helmholtz.marketplace.cerebrum.service.common.CerebrumPatchTranslator.CerebrumPatchUpdate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CerebrumPatchTranslatorTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MongoMappingContext mappingContext = new MongoMappingContext();
+
+    @Test void
+    givenPlainSetter_whenReplace_thenSetGuardedOnStoredProperty() throws Exception
+    {
+        CerebrumPatchUpdate patchUpdate = translator(Organization.class)
+                .translate(operations("[{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"DESY\"}]"));
+
+        assertThat(patchUpdate).isNotNull();
+        assertThat(patchUpdate.update.getUpdateObject().get("$set", Document.class))
+                .containsEntry("name", "DESY");
+        assertThat(patchUpdate.guard.getCriteriaObject())
+                .isEqualTo(new Document("name", new Document("$exists", true)));
+    }
+
+    @Test void
+    givenPlainSetter_whenRemove_thenUnsetGuardedOnStoredProperty() throws Exception
+    {
+        CerebrumPatchUpdate patchUpdate = translator(Organization.class)
+                .translate(operations("[{\"op\":\"remove\",\"path\":\"/name\"}]"));
+
+        assertThat(patchUpdate).isNotNull();
+        assertThat(patchUpdate.update.getUpdateObject().get("$unset", Document.class))
+                .containsKey("name");
+        /* an absent property does not match, leaving the error to the loaded entity's patch */
+        assertThat(patchUpdate.guard.getCriteriaObject())
+                .isEqualTo(new Document("name", new Document("$exists", true)));
+    }
+
+    @Test void
+    givenNormalisingSetter_whenReplace_thenNotTranslated() throws Exception
+    {
+        assertThat(translator(Organization.class)
+                .translate(operations("[{\"op\":\"replace\",\"path\":\"/abbreviation\",\"value\":\"desy\"}]")))
+                .isNull();
+    }
+
+    @Test void
+    givenSet_whenTestAndRemoveElement_thenPullGuardedOnPosition() throws Exception
+    {
+        CerebrumPatchUpdate patchUpdate = translator(MarketService.class).translate(operations(
+                "[{\"op\":\"test\",\"path\":\"/tags/1\",\"value\":\"cloud\"},"
+                        + "{\"op\":\"remove\",\"path\":\"/tags/1\"}]"));
+
+        assertThat(patchUpdate).isNotNull();
+        assertThat(patchUpdate.update.getUpdateObject().get("$pullAll", Document.class))
+                .containsEntry("tags", List.of("cloud"));
+        assertThat(patchUpdate.guard.getCriteriaObject()).isEqualTo(new Document("tags.1", "cloud"));
+    }
+
+    @Test void
+    givenSet_whenTestAndRemoveNonIndex_thenNotTranslated() throws Exception
+    {
+        assertThat(translator(MarketService.class).translate(operations(
+                "[{\"op\":\"test\",\"path\":\"/tags/first\",\"value\":\"cloud\"},"
+                        + "{\"op\":\"remove\",\"path\":\"/tags/first\"}]")))
+                .isNull();
+    }
+
+    @Test void
+    givenList_whenTestAndRemoveElement_thenNotTranslated() throws Exception
+    {
+        assertThat(translator(Person.class).translate(operations(
+                "[{\"op\":\"test\",\"path\":\"/emails/0\",\"value\":\"jane@desy.de\"},"
+                        + "{\"op\":\"remove\",\"path\":\"/emails/0\"}]")))
+                .isNull();
+    }
+
+    private CerebrumPatchTranslator translator(Class<?> entityClass)
+    {
+        return new CerebrumPatchTranslator(mappingContext.getRequiredPersistentEntity(entityClass), objectMapper);
+    }
+
+    private JsonNode operations(String patch) throws Exception
+    {
+        return objectMapper.readTree(patch);
+    }
+}
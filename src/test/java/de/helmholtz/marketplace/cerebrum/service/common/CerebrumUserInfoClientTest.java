@@ -0,0 +1,159 @@
+package de.helmholtz.marketplace.cerebrum.service.common;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/* runs against a local stub of the HDF AAI userinfo endpoint */
+class CerebrumUserInfoClientTest
+{
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger flakyRequests = new AtomicInteger();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer authorisationServer;
+    private CerebrumUserInfoClient client;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        authorisationServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        authorisationServer.createContext("/oauth2/userinfo", exchange -> {
+            requests.incrementAndGet();
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            boolean unavailable = "Bearer flaky".equals(authorization) && flakyRequests.getAndIncrement() == 0;
+            boolean valid = !unavailable && ("Bearer valid".equals(authorization)
+                    || "Bearer flaky".equals(authorization));
+            byte[] body = (valid ? "{\"sub\":\"1234\",\"given_name\":\"Garreth\"}" : "{}")
+                    .getBytes(StandardCharsets.UTF_8);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(valid ? 200 : unavailable ? 503 : 401, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        authorisationServer.start();
+        client = new CerebrumUserInfoClient(WebClient.create(), meterRegistry,
+                "http://localhost:" + authorisationServer.getAddress().getPort() + "/oauth2/userinfo",
+                Duration.ofSeconds(1), 2, 100);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        authorisationServer.stop(0);
+    }
+
+    @Test void
+    givenConcurrentCallsForSameToken_whenGetUserInfo_thenOneUpstreamRequest()
+    {
+        Jwt token = token("valid", "jti-1");
+
+        List<JsonNode> userInfos = Mono.zip(client.getUserInfo(token), client.getUserInfo(token),
+                (first, second) -> List.of(first, second)).block();
+        JsonNode cached = client.getUserInfo(token).block();
+
+        assertThat(userInfos).extracting(json -> json.get("sub").asText()).containsExactly("1234", "1234");
+        assertThat(cached.get("given_name").asText()).isEqualTo("Garreth");
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("cerebrum.aai.userinfo").tag("outcome", "success").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test void
+    givenDifferentTokens_whenGetUserInfo_thenOneUpstreamRequestEach()
+    {
+        client.getUserInfo(token("valid", "jti-1")).block();
+        client.getUserInfo(token("valid", "jti-2")).block();
+
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test void
+    givenRejectedToken_whenGetUserInfo_thenErrorCounted_and_notCached()
+    {
+        Jwt token = token("rejected", "jti-3");
+
+        assertThatThrownBy(() -> client.getUserInfo(token).block())
+                .isInstanceOf(WebClientResponseException.Unauthorized.class);
+        assertThatThrownBy(() -> client.getUserInfo(token).block())
+                .isInstanceOf(WebClientResponseException.Unauthorized.class);
+
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("cerebrum.aai.userinfo.errors").tag("cause", "401").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test void
+    givenServerError_whenGetUserInfo_thenRetried()
+    {
+        JsonNode userInfo = client.getUserInfo(token("flaky", "jti-5")).block();
+
+        assertThat(userInfo.get("sub").asText()).isEqualTo("1234");
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    @Test void
+    givenTokenWithIdentityClaims_whenGetIdentity_thenNoUpstreamRequest()
+    {
+        Jwt token = Jwt.withTokenValue("valid")
+                .header("alg", "RS256")
+                .subject("1234")
+                .claim("given_name", "Garreth")
+                .claim("family_name", "Lages")
+                .claim("email", "glages0@tmall.com")
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+
+        JsonNode identity = client.getIdentity(token).block();
+
+        assertThat(identity.get("sub").asText()).isEqualTo("1234");
+        assertThat(identity.get("family_name").asText()).isEqualTo("Lages");
+        assertThat(identity.get("email").asText()).isEqualTo("glages0@tmall.com");
+        assertThat(requests.get()).isZero();
+    }
+
+    @Test void
+    givenTokenWithoutIdentityClaims_whenGetIdentity_thenUserInfo()
+    {
+        JsonNode identity = client.getIdentity(token("valid", "jti-4")).block();
+
+        assertThat(identity.get("given_name").asText()).isEqualTo("Garreth");
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    private static Jwt token(String value, String jti)
+    {
+        return Jwt.withTokenValue(value)
+                .header("alg", "RS256")
+                .subject("1234")
+                .jti(jti)
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+    }
+}
@@ -0,0 +1,97 @@
+package de.helmholtz.marketplace.cerebrum.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CerebrumEntityUuidGeneratorTest
+{
+    private static final int THREADS = 32;
+    private static final int PER_THREAD = 10000;
+    private static final String VALID = "svc-5189a7bc-d630-11ea-87d0-0242ac130003";
+
+    @Test void
+    givenParallelThreads_whenGenerate_thenAllUnique() throws Exception
+    {
+        Set<String> uuids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < PER_THREAD; j++) {
+                        uuids.add(CerebrumEntityUuidGenerator.generate("svc"));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(uuids).hasSize(THREADS * PER_THREAD);
+    }
+
+    @Test void
+    givenSuccessiveUuids_whenGenerate_thenTimestampsIncrease()
+    {
+        UUID first = CerebrumEntityUuidGenerator.generateType1UUID();
+        UUID second = CerebrumEntityUuidGenerator.generateType1UUID();
+
+        assertThat(first.version()).isEqualTo(1);
+        assertThat(first.variant()).isEqualTo(2);
+        assertThat(second.timestamp()).isGreaterThan(first.timestamp());
+    }
+
+    @Test void
+    givenGeneratedUuid_whenIsValid_thenTrue()
+    {
+        assertThat(CerebrumEntityUuidGenerator.isValid(CerebrumEntityUuidGenerator.generate("org"))).isTrue();
+    }
+
+    @Test void
+    givenValidId_whenParse_thenPrefixAndUuid()
+    {
+        CerebrumEntityUuidGenerator.ParsedUuid parsed = CerebrumEntityUuidGenerator.parse(VALID);
+
+        assertThat(parsed.getPrefix()).isEqualTo(CerebrumEntityUuidGenerator.PrefixEnum.MARKETSERVICE);
+        assertThat(parsed.getUuid()).isEqualTo(UUID.fromString(VALID.substring(4)));
+    }
+
+    @Test void
+    givenCanonicalId_whenIsValid_thenTrue()
+    {
+        assertThat(CerebrumEntityUuidGenerator.isValid(VALID)).isTrue();
+        assertThat(CerebrumEntityUuidGenerator.isValid(VALID.toUpperCase().replace("SVC", "svc"))).isTrue();
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {
+            "garbage",
+            "xyz-5189a7bc-d630-11ea-87d0-0242ac130003",
+            "svc_5189a7bc-d630-11ea-87d0-0242ac130003",
+            "svc-5189a7bc-d630-01ea-87d0-0242ac130003",
+            "svc-5189a7bc-d630-11ea-87d0-0242ac13000g",
+            "svc-5189a7bcd-630-11ea-87d0-0242ac130003",
+            "svc-5189a7bc-d630-11ea-87d0-0242ac1300031"})
+    void givenInvalidId_whenIsValid_thenFalse_and_notParsed(String id)
+    {
+        assertThat(CerebrumEntityUuidGenerator.isValid(id)).isFalse();
+        assertThat(CerebrumEntityUuidGenerator.parse(id)).isNull();
+    }
+}